@@ -1,9 +1,9 @@
 package com.example.bankcards.aspects;
 
-import com.example.bankcards.dto.cards.CardBlockRequestDto;
 import com.example.bankcards.dto.cards.CardDto;
-import com.example.bankcards.dto.transactions.TransactionDto;
+import com.example.bankcards.entity.Card;
 import com.example.bankcards.util.AuthenticatedUserUtil;
+import com.example.bankcards.util.CardNumberCache;
 import com.example.bankcards.util.EncryptionUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -11,6 +11,10 @@ import org.aspectj.lang.annotation.AfterReturning;
 import org.aspectj.lang.annotation.Aspect;
 import org.springframework.stereotype.Component;
 
+/**
+ * Мапперы всегда отдают маскированный номер, построенный по {@code pan_last4}.
+ * Полный номер расшифровывается только здесь и только для владельца карты.
+ */
 @Aspect
 @Component
 @RequiredArgsConstructor
@@ -18,70 +22,34 @@ import org.springframework.stereotype.Component;
 public class CardMaskingAspect {
     private final EncryptionUtil encryptionUtil;
     private final AuthenticatedUserUtil userUtil;
+    private final CardNumberCache cardNumberCache;
 
     @AfterReturning(
-            pointcut = "execution(* com.example.bankcards.dto.mappers.CardMapper.toDto*(..)) ||"+
-                       "execution(* com.example.bankcards.dto.mappers.CardBlockRequestMapper.toDto*(..)) ||"+
-                       "execution(* com.example.bankcards.dto.mappers.TransactionMapper.toDto*(..))",
+            pointcut = "execution(* com.example.bankcards.dto.mappers.CardMapper.toDto*(..)) && args(card)",
             returning = "result")
-    public void maskSingleCardDto(Object result) {
+    public void revealForOwner(Card card, Object result) {
         if (result instanceof CardDto cardDto) {
-            maskCardDto(cardDto);
-        }else if (result instanceof  TransactionDto transactionDto){
-            maskTransactionDto(transactionDto);
-        } else if (result instanceof CardBlockRequestDto blockRequestDto) {
-
+            revealCardDto(cardDto, card);
         }
     }
 
-    private void maskCardDto(CardDto cardDto) {
+    private void revealCardDto(CardDto cardDto, Card card) {
         try {
             String currentUsername = userUtil.getCurrentUsername();
-            boolean isAdmin = userUtil.isCurrentUserAdmin();
             boolean isOwner = userUtil.isCardOwner(cardDto.getOwnerId(), currentUsername);
 
-            log.debug("Маскирование карты ID: {}, пользователь: {}, админ: {}, владелец: {}",
-                    cardDto.getId(), currentUsername, isAdmin, isOwner);
-            String maskedNumber;
-            if (!isAlreadyDecrypted(cardDto.getCardNumber())) {
-                cardDto.setCardNumber(encryptionUtil.decryptCardNumber(cardDto.getCardNumber()));
-            }
+            log.debug("Маскирование карты ID: {}, пользователь: {}, владелец: {}",
+                    cardDto.getId(), currentUsername, isOwner);
+
             if (isOwner) {
-                maskedNumber = cardDto.getCardNumber();
-            } else {
-                maskedNumber = encryptionUtil.maskCardNumber(cardDto.getCardNumber());
+                cardDto.setCardNumber(cardNumberCache.reveal(card.getId(), card.getCardNumber()));
+            } else if (card.getPanLast4() == null) {
+                cardDto.setCardNumber(encryptionUtil.maskCardNumber(
+                        encryptionUtil.revealCardNumber(card.getCardNumber())));
             }
-
-            cardDto.setCardNumber(maskedNumber);
-
         } catch (Exception e) {
             log.warn("Ошибка при маскировании номера карты: {}", e.getMessage());
             cardDto.setCardNumber("****");
         }
     }
-
-    private void maskTransactionDto(TransactionDto transactionDto) {
-        try {
-            String currentUsername = userUtil.getCurrentUsername();
-            boolean isAdmin = userUtil.isCurrentUserAdmin();
-            boolean isOwner = userUtil.isCardOwner(transactionDto.getToCardId(), currentUsername);
-
-            log.debug("Маскирование номера карты в транзакции ID: {} , пользователь: {}, админ: {}, владелец: {}",
-                    transactionDto.getId(), currentUsername, isAdmin, isOwner);
-
-            if (isAdmin) {
-                transactionDto.setFromCardCardNumber(encryptionUtil.maskCardNumber(transactionDto.getFromCardCardNumber()));
-                transactionDto.setToCardCardNumber(encryptionUtil.maskCardNumber(transactionDto.getToCardCardNumber()));
-            }
-
-        } catch (Exception e) {
-            log.warn("Ошибка при маскировании номера карты: {}", e.getMessage());
-            transactionDto.setFromCardCardNumber("****");
-            transactionDto.setToCardCardNumber("****");
-        }
-    }
-
-    private boolean isAlreadyDecrypted(String cardNumber) {
-        return cardNumber.matches("\\d{13,19}");
-    }
-}
\ No newline at end of file
+}
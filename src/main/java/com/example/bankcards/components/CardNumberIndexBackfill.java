@@ -0,0 +1,66 @@
+package com.example.bankcards.components;
+
+import com.example.bankcards.util.EncryptionUtil;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CardNumberIndexBackfill implements CommandLineRunner {
+    private static final String SELECT_CHUNK =
+            "SELECT id, card_number FROM cards " +
+            "WHERE (card_number_hash IS NULL OR pan_last4 IS NULL OR pan_bin IS NULL) AND id > ? ORDER BY id LIMIT ?";
+    private static final String UPDATE_INDEX =
+            "UPDATE cards SET card_number_hash = ?, pan_last4 = ?, pan_bin = ? WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EncryptionUtil encryptionUtil;
+
+    @Value("${app.encryption.backfill.chunk-size:500}")
+    private int chunkSize;
+
+    @Override
+    public void run(String... args) {
+        long lastId = 0;
+        int total = 0;
+
+        while (true) {
+            List<Object[]> updates = new ArrayList<>();
+            List<CardRow> rows = jdbcTemplate.query(SELECT_CHUNK,
+                    (rs, rowNum) -> new CardRow(rs.getLong("id"), rs.getString("card_number")),
+                    lastId, chunkSize);
+            if (rows.isEmpty()) {
+                break;
+            }
+
+            for (CardRow row : rows) {
+                lastId = row.id();
+                try {
+                    String plainNumber = encryptionUtil.revealCardNumber(row.cardNumber());
+                    updates.add(new Object[]{encryptionUtil.hashCardNumber(plainNumber),
+                            encryptionUtil.panLast4(plainNumber), encryptionUtil.panBin(plainNumber), row.id()});
+                } catch (Exception e) {
+                    log.warn("Не удалось вычислить индексные колонки карты ID: {}, причина: {}", row.id(), e.getMessage());
+                }
+            }
+
+            jdbcTemplate.batchUpdate(UPDATE_INDEX, updates);
+            total += updates.size();
+        }
+
+        if (total > 0) {
+            log.info("Заполнены индексные колонки номеров для {} карт", total);
+        }
+    }
+
+    private record CardRow(long id, String cardNumber) {
+    }
+}
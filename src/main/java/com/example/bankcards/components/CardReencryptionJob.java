@@ -0,0 +1,128 @@
+package com.example.bankcards.components;
+
+import com.example.bankcards.util.EncryptionUtil;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Онлайн-перешифрование номеров карт активной версией ключа.
+ * Таблица читается по id порциями, каждая порция пишется одним JDBC-батчем вместе с контрольной точкой,
+ * поэтому после рестарта работа продолжается с места остановки. Обновление условное по старому
+ * шифротексту и не перетирает номер, изменённый параллельно.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CardReencryptionJob {
+    private static final String SELECT_CHUNK =
+            "SELECT id, card_number FROM cards WHERE id > ? ORDER BY id LIMIT ?";
+    private static final String UPDATE_CARD =
+            "UPDATE cards SET card_number = ? WHERE id = ? AND card_number = ?";
+    private static final String SELECT_CHECKPOINT =
+            "SELECT last_card_id FROM card_reencryption_checkpoints WHERE key_version = ? AND completed_at IS NULL";
+    private static final String INSERT_CHECKPOINT =
+            "INSERT INTO card_reencryption_checkpoints (key_version) VALUES (?) ON CONFLICT (key_version) DO NOTHING";
+    private static final String UPDATE_CHECKPOINT =
+            "UPDATE card_reencryption_checkpoints SET last_card_id = ?, reencrypted = reencrypted + ?, " +
+            "updated_at = CURRENT_TIMESTAMP WHERE key_version = ?";
+    private static final String COMPLETE_CHECKPOINT =
+            "UPDATE card_reencryption_checkpoints SET completed_at = CURRENT_TIMESTAMP WHERE key_version = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final EncryptionUtil encryptionUtil;
+
+    @Value("${app.encryption.reencryption.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.encryption.reencryption.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${app.encryption.reencryption.pause-millis:200}")
+    private long pauseMillis;
+
+    @Scheduled(initialDelayString = "${app.encryption.reencryption.initial-delay:PT1M}",
+            fixedDelayString = "${app.encryption.reencryption.interval:PT1H}")
+    public void reencrypt() {
+        if (!enabled) {
+            return;
+        }
+
+        int keyVersion = encryptionUtil.activeKeyVersion();
+        jdbcTemplate.update(INSERT_CHECKPOINT, keyVersion);
+        List<Long> checkpoint = jdbcTemplate.queryForList(SELECT_CHECKPOINT, Long.class, keyVersion);
+        if (checkpoint.isEmpty()) {
+            return;
+        }
+
+        long lastId = checkpoint.get(0);
+        log.info("Перешифрование номеров карт ключом версии {} начиная с ID: {}", keyVersion, lastId);
+
+        while (true) {
+            long afterId = lastId;
+            Long processedUpTo = transactionTemplate.execute(status -> reencryptChunk(keyVersion, afterId));
+            if (processedUpTo == null) {
+                break;
+            }
+            lastId = processedUpTo;
+
+            try {
+                Thread.sleep(pauseMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("Перешифрование прервано на карте ID: {}", lastId);
+                return;
+            }
+        }
+
+        jdbcTemplate.update(COMPLETE_CHECKPOINT, keyVersion);
+        log.info("Перешифрование номеров карт ключом версии {} завершено", keyVersion);
+    }
+
+    /**
+     * Перешифровывает одну порцию и возвращает id последней просмотренной карты
+     * или {@code null}, если карт больше нет.
+     */
+    private Long reencryptChunk(int keyVersion, long afterId) {
+        List<CardRow> rows = jdbcTemplate.query(SELECT_CHUNK,
+                (rs, rowNum) -> new CardRow(rs.getLong("id"), rs.getString("card_number")),
+                afterId, chunkSize);
+        if (rows.isEmpty()) {
+            return null;
+        }
+
+        List<Object[]> updates = new ArrayList<>();
+        for (CardRow row : rows) {
+            if (!encryptionUtil.needsReencryption(row.cardNumber())) {
+                continue;
+            }
+            try {
+                String reencrypted = encryptionUtil.encryptCardNumber(encryptionUtil.revealCardNumber(row.cardNumber()));
+                updates.add(new Object[]{reencrypted, row.id(), row.cardNumber()});
+            } catch (Exception e) {
+                log.warn("Не удалось перешифровать номер карты ID: {}, причина: {}", row.id(), e.getMessage());
+            }
+        }
+
+        int reencrypted = 0;
+        if (!updates.isEmpty()) {
+            for (int count : jdbcTemplate.batchUpdate(UPDATE_CARD, updates)) {
+                reencrypted += count > 0 ? 1 : 0;
+            }
+        }
+        long lastId = rows.get(rows.size() - 1).id();
+        jdbcTemplate.update(UPDATE_CHECKPOINT, lastId, reencrypted, keyVersion);
+        return lastId;
+    }
+
+    private record CardRow(long id, String cardNumber) {
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.bankcards.components;
+
+import com.example.bankcards.repositories.IdempotencyKeyRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Удаляет ключи идемпотентности старше срока хранения: повторы после него выполняются как новые переводы.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class IdempotencyKeySweeper {
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Value("${app.transfer.idempotency.retention:P1D}")
+    private Duration retention;
+
+    @Scheduled(initialDelayString = "${app.transfer.idempotency.sweep-initial-delay:PT5M}",
+            fixedDelayString = "${app.transfer.idempotency.sweep-interval:PT1H}")
+    public void sweep() {
+        int deleted = idempotencyKeyRepository.deleteCreatedBefore(Instant.now().minus(retention));
+        if (deleted > 0) {
+            log.info("Удалено устаревших ключей идемпотентности: {}", deleted);
+        }
+    }
+}
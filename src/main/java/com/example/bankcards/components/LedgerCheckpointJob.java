@@ -0,0 +1,188 @@
+package com.example.bankcards.components;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Контрольные точки балансов по журналу проводок и сверка с {@code cards.balance}.
+ * Новая точка карты — предыдущая точка плюс её проводки до горизонта, поэтому каждый запуск читает
+ * только проводки с прошлого горизонта.
+ * <p>
+ * ID проводки выдаётся при вставке, а видимой она становится только после коммита, поэтому проводка
+ * долгой транзакции может появиться позже проводок с большими ID. Горизонт хранится явно
+ * ({@code ledger_checkpoint_horizon}) и сдвигается только по непрерывной цепочке ID: на пропуске
+ * он останавливается, пока недостающий ID не появится. Каждый пропуск в прочитанных ID запоминается
+ * ({@code ledger_posting_gaps}) со временем, когда он был замечен впервые, поэтому часы идут сразу для всех
+ * пропусков, а не только для ближайшего к горизонту. Пропуск, не заполненный дольше {@code gap-timeout},
+ * считается ID откаченной транзакции и перешагивается; за один запуск перешагиваются все такие пропуски
+ * до первого более молодого. Таймаут должен быть больше самой долгой транзакции перевода.
+ */
+@Slf4j
+@Component
+public class LedgerCheckpointJob {
+    private static final String LATEST_CHECKPOINT =
+            "card_balance_checkpoints cp ON cp.card_id = %s AND cp.posting_id = " +
+            "(SELECT MAX(posting_id) FROM card_balance_checkpoints WHERE card_id = %<s)";
+    private static final String SELECT_HORIZON =
+            "SELECT posting_id FROM ledger_checkpoint_horizon WHERE id = 1 FOR UPDATE";
+    private static final String INSERT_HORIZON =
+            "INSERT INTO ledger_checkpoint_horizon (id, posting_id, updated_at) VALUES (1, 0, ?)";
+    private static final String UPDATE_HORIZON =
+            "UPDATE ledger_checkpoint_horizon SET posting_id = ?, updated_at = ? WHERE id = 1";
+    private static final String SELECT_GAPS =
+            "SELECT first_id, last_id, seen_at FROM ledger_posting_gaps";
+    private static final String DELETE_GAPS =
+            "DELETE FROM ledger_posting_gaps";
+    private static final String INSERT_GAP =
+            "INSERT INTO ledger_posting_gaps (first_id, last_id, seen_at) VALUES (?, ?, ?)";
+    private static final String SELECT_POSTING_IDS =
+            "SELECT id FROM ledger_postings WHERE id > ? ORDER BY id LIMIT ?";
+    private static final String INSERT_CHECKPOINTS =
+            "INSERT INTO card_balance_checkpoints (card_id, posting_id, balance, as_of, created_at) " +
+            "SELECT p.card_id, MAX(p.id), COALESCE(MAX(cp.balance), 0) + SUM(p.amount), " +
+            "CASE WHEN MAX(cp.as_of) > MAX(p.created_at) THEN MAX(cp.as_of) ELSE MAX(p.created_at) END, ? " +
+            "FROM ledger_postings p LEFT JOIN " + LATEST_CHECKPOINT.formatted("p.card_id") + " " +
+            "WHERE p.card_id IS NOT NULL AND p.id > ? AND p.id <= ? " +
+            "GROUP BY p.card_id";
+    private static final String SELECT_MISMATCHES =
+            "SELECT r.card_id, r.balance, r.ledger_balance FROM (" +
+            "SELECT c.id AS card_id, c.balance AS balance, COALESCE(cp.balance, 0) + COALESCE((" +
+            "SELECT SUM(p.amount) FROM ledger_postings p WHERE p.card_id = c.id AND p.id > COALESCE(cp.posting_id, 0)" +
+            "), 0) AS ledger_balance " +
+            "FROM cards c LEFT JOIN " + LATEST_CHECKPOINT.formatted("c.id") +
+            ") r WHERE r.balance <> r.ledger_balance";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Counter mismatches;
+
+    @Value("${app.ledger.checkpoint.gap-timeout:PT10M}")
+    private Duration gapTimeout;
+
+    @Value("${app.ledger.checkpoint.max-postings:100000}")
+    private int maxPostings;
+
+    public LedgerCheckpointJob(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                               MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.mismatches = Counter.builder("ledger.reconciliation.mismatches")
+                .description("Карты, баланс которых расходится с журналом проводок")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(initialDelayString = "${app.ledger.checkpoint.initial-delay:PT5M}",
+            fixedDelayString = "${app.ledger.checkpoint.interval:PT1H}")
+    public void run() {
+        checkpoint();
+        reconcile();
+    }
+
+    /**
+     * Сдвигает горизонт по непрерывной цепочке ID и записывает контрольные точки карт,
+     * у которых есть проводки между прежним и новым горизонтом. Строка горизонта блокируется,
+     * поэтому параллельные запуски на разных инстансах выполняются по очереди.
+     *
+     * @return количество записанных точек
+     */
+    public int checkpoint() {
+        Integer written = transactionTemplate.execute(status -> {
+            Instant now = Instant.now();
+            long stored = lockHorizon(now);
+            List<Gap> known = jdbcTemplate.query(SELECT_GAPS, (rs, row) ->
+                    new Gap(rs.getLong("first_id"), rs.getLong("last_id"), rs.getTimestamp("seen_at").toInstant()));
+
+            List<Long> ids = jdbcTemplate.queryForList(SELECT_POSTING_IDS, Long.class, stored, maxPostings);
+            long horizon = stored;
+            long previous = stored;
+            boolean blocked = false;
+            List<Gap> gaps = new ArrayList<>();
+            for (long id : ids) {
+                if (id > previous + 1) {
+                    Gap gap = new Gap(previous + 1, id - 1, firstSeen(known, previous + 1, id - 1, now));
+                    if (!blocked && !gap.seenAt().isAfter(now.minus(gapTimeout))) {
+                        log.warn("Проводки с ID {}..{} не появились за {}, считаем их откаченными",
+                                gap.firstId(), gap.lastId(), gapTimeout);
+                    } else {
+                        blocked = true;
+                        gaps.add(gap);
+                    }
+                }
+                if (!blocked) {
+                    horizon = id;
+                }
+                previous = id;
+            }
+
+            jdbcTemplate.update(DELETE_GAPS);
+            if (!gaps.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERT_GAP, gaps.stream()
+                        .map(gap -> new Object[]{gap.firstId(), gap.lastId(), Timestamp.from(gap.seenAt())})
+                        .toList());
+            }
+            jdbcTemplate.update(UPDATE_HORIZON, horizon, Timestamp.from(now));
+            if (horizon == stored) {
+                return 0;
+            }
+
+            int count = jdbcTemplate.update(INSERT_CHECKPOINTS, Timestamp.from(now), stored, horizon);
+            log.info("Записано контрольных точек балансов: {}, горизонт проводок: {}", count, horizon);
+            return count;
+        });
+        return written == null ? 0 : written;
+    }
+
+    /**
+     * Сверяет балансы карт с журналом одним запросом, чтобы баланс и проводки читались из одного снимка.
+     *
+     * @return количество карт с расхождением
+     */
+    public int reconcile() {
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(SELECT_MISMATCHES);
+        for (Map<String, Object> row : rows) {
+            log.error("Баланс карты {} ({}) расходится с журналом проводок ({})",
+                    row.get("card_id"), row.get("balance"), row.get("ledger_balance"));
+        }
+        mismatches.increment(rows.size());
+        return rows.size();
+    }
+
+    private long lockHorizon(Instant now) {
+        List<Long> rows = jdbcTemplate.queryForList(SELECT_HORIZON, Long.class);
+        if (!rows.isEmpty()) {
+            return rows.get(0);
+        }
+        jdbcTemplate.update(INSERT_HORIZON, Timestamp.from(now));
+        return 0;
+    }
+
+    /**
+     * Время, когда ID пропуска впервые оказались отсутствующими: самое раннее среди запомненных пропусков,
+     * с которыми он пересекается. Часть ID старого пропуска могла появиться, но остальные не видны с тех пор.
+     */
+    private static Instant firstSeen(List<Gap> known, long firstId, long lastId, Instant now) {
+        Instant seenAt = now;
+        for (Gap gap : known) {
+            if (gap.firstId() <= lastId && gap.lastId() >= firstId && gap.seenAt().isBefore(seenAt)) {
+                seenAt = gap.seenAt();
+            }
+        }
+        return seenAt;
+    }
+
+    private record Gap(long firstId, long lastId, Instant seenAt) {
+    }
+}
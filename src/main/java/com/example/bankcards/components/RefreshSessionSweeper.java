@@ -0,0 +1,74 @@
+package com.example.bankcards.components;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Удаляет истёкшие refresh-сессии порциями.
+ * Каждая порция — отдельный короткий DELETE по индексу {@code expires_in}, строки, занятые
+ * параллельной транзакцией, пропускаются, поэтому очистка не блокирует вход и обновление токенов.
+ */
+@Slf4j
+@Component
+public class RefreshSessionSweeper {
+    private static final String DELETE_EXPIRED =
+            "DELETE FROM refresh_sessions WHERE id IN (" +
+            "SELECT id FROM refresh_sessions WHERE expires_in < ? LIMIT ? FOR UPDATE SKIP LOCKED)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Counter deleted;
+
+    @Value("${app.security.refresh-sessions.sweep.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.security.refresh-sessions.sweep.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${app.security.refresh-sessions.sweep.max-batches:100}")
+    private int maxBatches;
+
+    @Value("${app.security.refresh-sessions.sweep.pause-millis:100}")
+    private long pauseMillis;
+
+    public RefreshSessionSweeper(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.deleted = Counter.builder("refresh_sessions.swept")
+                .description("Удалённые истёкшие refresh-сессии")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(initialDelayString = "${app.security.refresh-sessions.sweep.initial-delay:PT5M}",
+            fixedDelayString = "${app.security.refresh-sessions.sweep.interval:PT15M}")
+    public void sweep() {
+        if (!enabled) {
+            return;
+        }
+
+        long now = System.currentTimeMillis() / 1000;
+        int total = 0;
+        for (int batch = 0; batch < maxBatches; batch++) {
+            int count = jdbcTemplate.update(DELETE_EXPIRED, now, batchSize);
+            total += count;
+            deleted.increment(count);
+            if (count < batchSize) {
+                break;
+            }
+
+            try {
+                Thread.sleep(pauseMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        if (total > 0) {
+            log.info("Удалено истёкших refresh-сессий: {}", total);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.bankcards.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Версионированные ключи шифрования номеров карт. Если {@code keys} не заданы,
+ * активной версии соответствует {@code app.encryption.key}.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "app.encryption.key-ring")
+public class EncryptionKeyRingProperties {
+    private int activeVersion = 1;
+    private Map<Integer, String> keys = new HashMap<>();
+}
@@ -0,0 +1,39 @@
+package com.example.bankcards.config;
+
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.crypto.password.Pbkdf2PasswordEncoder;
+
+import java.util.Map;
+
+/**
+ * Собирает {@link DelegatingPasswordEncoder}: новые хэши пишутся с префиксом {@code {id}} выбранного алгоритма,
+ * а хэши без префикса (все существующие) читаются как BCrypt.
+ */
+public final class PasswordEncoderFactory {
+    public static final String BCRYPT = "bcrypt";
+    public static final String PBKDF2 = "pbkdf2";
+
+    private PasswordEncoderFactory() {
+    }
+
+    public static PasswordEncoder create(PasswordHashingProperties properties) {
+        return create(properties.getAlgorithm(), properties.getBcryptStrength(), properties.getPbkdf2Iterations());
+    }
+
+    public static PasswordEncoder create(String algorithm, int bcryptStrength, int pbkdf2Iterations) {
+        BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder(bcryptStrength);
+        Map<String, PasswordEncoder> encoders = Map.of(
+                BCRYPT, bcrypt,
+                PBKDF2, new Pbkdf2PasswordEncoder("", 16, pbkdf2Iterations,
+                        Pbkdf2PasswordEncoder.SecretKeyFactoryAlgorithm.PBKDF2WithHmacSHA256));
+        if (!encoders.containsKey(algorithm)) {
+            throw new IllegalStateException("Неизвестный алгоритм хэширования паролей: " + algorithm);
+        }
+
+        DelegatingPasswordEncoder encoder = new DelegatingPasswordEncoder(algorithm, encoders);
+        encoder.setDefaultPasswordEncoderForMatches(bcrypt);
+        return encoder;
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.bankcards.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Алгоритм и стоимость хэширования паролей. Хэши другого алгоритма или меньшей стоимости
+ * пересчитываются при следующем успешном входе.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "app.security.password")
+public class PasswordHashingProperties {
+    private String algorithm = PasswordEncoderFactory.BCRYPT;
+    private int bcryptStrength = 10;
+    private int pbkdf2Iterations = 310_000;
+}
@@ -2,6 +2,7 @@ package com.example.bankcards.controller;
 
 import com.example.bankcards.dto.cards.CardDto;
 import com.example.bankcards.service.CardService;
+import com.example.bankcards.service.LedgerService;
 import com.example.bankcards.util.AuthenticatedUserUtil;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -17,10 +18,13 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.math.BigDecimal;
+import java.time.Instant;
 import java.util.List;
 
 @RestController
@@ -32,6 +36,7 @@ import java.util.List;
 public class CardController {
     private final AuthenticatedUserUtil userUtil;
     private final CardService cardService;
+    private final LedgerService ledgerService;
 
     @Operation(summary = "Получить все карты пользователя",
             description = "Получение списка карт текущего пользователя с пагинацией")
@@ -118,6 +123,18 @@ public class CardController {
         return ResponseEntity.ok(card);
     }
 
+    @Operation(summary = "Получить баланс карты на момент времени",
+            description = "Баланс по журналу проводок: ближайшая контрольная точка плюс проводки после неё")
+    @GetMapping("/{id}/balance")
+    @PreAuthorize("@authenticatedUserUtil.isCardOwner(#id, authentication.name) or hasRole('ADMIN')")
+    public ResponseEntity<BigDecimal> getBalanceAsOf(
+            @Parameter(description = "ID карты") @PathVariable Long id,
+            @Parameter(description = "Момент времени (ISO-8601)")
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant at) {
+
+        return ResponseEntity.ok(ledgerService.balanceAsOf(id, at));
+    }
+
     @Operation(summary = "Получить карту по номеру",
             description = "Получение подробной информации о карте по его номеру")
     @ApiResponses(value = {
@@ -1,7 +1,10 @@
 package com.example.bankcards.controller;
 
+import com.example.bankcards.dto.transactions.BatchTransferItemResult;
+import com.example.bankcards.dto.transactions.BatchTransferRequest;
 import com.example.bankcards.dto.transactions.TransactionDto;
 import com.example.bankcards.dto.transactions.TransferRequest;
+import com.example.bankcards.service.BatchTransferService;
 import com.example.bankcards.service.TransactionService;
 import com.example.bankcards.util.AuthenticatedUserUtil;
 import io.swagger.v3.oas.annotations.Operation;
@@ -13,6 +16,7 @@ import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
@@ -23,6 +27,8 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+
 @Slf4j
 @RestController
 @RequestMapping("/transactions")
@@ -30,8 +36,10 @@ import org.springframework.web.bind.annotation.*;
 @RequiredArgsConstructor
 @Tag(name = "Транзакции", description = "Операции с переводами между картами")
 public class TransactionController {
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
 
     private final TransactionService transactionService;
+    private final BatchTransferService batchTransferService;
     private final AuthenticatedUserUtil userUtil;
 
     @Operation(summary = "Перевод между своими картами",
@@ -46,19 +54,43 @@ public class TransactionController {
                     description = "Некорректные данные для перевода"),
             @io.swagger.v3.oas.annotations.responses.ApiResponse(
                     responseCode = "403",
-                    description = "Карта не принадлежит пользователю")
+                    description = "Карта не принадлежит пользователю"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "409",
+                    description = "Ключ идемпотентности использован для другого запроса или запрос с ним ещё выполняется")
     })
     @PostMapping("/transfer")
     public ResponseEntity<TransactionDto> transferBetweenMyCards(
+            @Parameter(description = "Ключ идемпотентности: повтор с тем же ключом вернёт результат первого перевода")
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
             @Valid @RequestBody TransferRequest request) {
 
         String userName = userUtil.getCurrentUsername();
         log.info("Пользователь {} инициирует перевод с карты {} на карту {} на сумму {}",
                 userName, request.getFromCardId(), request.getToCardId(), request.getAmount());
-        TransactionDto transaction = transactionService.transferBetweenUserCards(request);
+        TransactionDto transaction = transactionService.transferBetweenUserCards(request, idempotencyKey);
         return ResponseEntity.ok(transaction);
     }
 
+    @Operation(summary = "Пакетный перевод между своими картами",
+            description = "Выполняет переводы пакета по порядку в одной транзакции и возвращает результат по каждому")
+    @ApiResponses(value = {
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "200",
+                    description = "Пакет обработан, результат по каждому переводу"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "400",
+                    description = "Пустой или слишком большой пакет")
+    })
+    @PostMapping("/transfer/batch")
+    public ResponseEntity<List<BatchTransferItemResult>> transferBatchBetweenMyCards(
+            @Valid @RequestBody BatchTransferRequest request) {
+
+        log.info("Пользователь {} инициирует пакетный перевод из {} операций",
+                userUtil.getCurrentUsername(), request.getTransfers().size());
+        return ResponseEntity.ok(batchTransferService.transfer(request.getTransfers()));
+    }
+
     @Operation(summary = "Получить историю моих транзакций",
             description = "Получение истории транзакций по картам пользователя")
     @GetMapping("/my")
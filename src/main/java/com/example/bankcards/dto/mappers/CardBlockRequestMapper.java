@@ -6,15 +6,20 @@ import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.CardBlockRequest;
 import com.example.bankcards.enums.CardRequestStatus;
 import com.example.bankcards.enums.EnumInterface;
+import com.example.bankcards.util.EncryptionUtil;
+import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 
 @Component
+@RequiredArgsConstructor
 public class CardBlockRequestMapper {
+    private final EncryptionUtil encryptionUtil;
+
     public CardBlockRequestDto mapToDto(CardBlockRequest request) {
         return CardBlockRequestDto.builder()
                 .id(request.getId())
                 .cardId(request.getCard().getId())
-                .cardNumber(request.getCard().getCardNumber())
+                .cardNumber(encryptionUtil.maskLast4(request.getCard().getPanLast4()))
                 .userId(request.getUser().getId())
                 .userName(String.format("%s %s %s",
                         request.getUser().getFirstName(),
@@ -6,6 +6,8 @@ import com.example.bankcards.entity.User;
 import com.example.bankcards.enums.CardStatus;
 import com.example.bankcards.enums.CardType;
 import com.example.bankcards.enums.EnumInterface;
+import com.example.bankcards.util.EncryptionUtil;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
@@ -15,14 +17,17 @@ import java.time.LocalDate;
 
 @Slf4j
 @Component
+@RequiredArgsConstructor
 public class CardMapper {
+    private final EncryptionUtil encryptionUtil;
+
     @Value("${app.expiry_date}")
     private Integer expiryDate;
     
     public CardDto toDto(Card card) {
         CardDto dto = new CardDto();
         dto.setId(card.getId());
-        dto.setCardNumber(card.getCardNumber());
+        dto.setCardNumber(encryptionUtil.maskLast4(card.getPanLast4()));
 
         dto.setOwnerName(String.format("%s %s %s",
                 card.getOwner().getFirstName(),
@@ -39,8 +44,12 @@ public class CardMapper {
         return dto;
     }
 
-    public Card createEntity(User owner, String encryptedCardNumber, String cardType) {
+    public Card createEntity(User owner, String encryptedCardNumber, String cardNumberHash,
+                             String panLast4, String panBin, String cardType) {
         return new Card().setCardNumber(encryptedCardNumber)
+        .setCardNumberHash(cardNumberHash)
+        .setPanLast4(panLast4)
+        .setPanBin(panBin)
         .setOwner(owner)
         .setType(cardType)
         .setExpiryDate(LocalDate.now().plusYears(this.expiryDate))
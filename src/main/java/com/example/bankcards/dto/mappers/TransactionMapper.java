@@ -6,20 +6,26 @@ import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.Transaction;
 import com.example.bankcards.enums.EnumInterface;
 import com.example.bankcards.enums.TransactionStatus;
+import com.example.bankcards.repositories.TransactionRepo;
+import com.example.bankcards.util.EncryptionUtil;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
 @Slf4j
 @Component
+@RequiredArgsConstructor
 public class TransactionMapper {
+    private final EncryptionUtil encryptionUtil;
+
     public TransactionDto toDto(Transaction transaction) {
         TransactionDto dto = new TransactionDto();
         dto.setId(transaction.getId());
         dto.setFromCardId(transaction.getFromCard().getId());
         dto.setToCardId(transaction.getToCard().getId());
 
-        dto.setFromCardCardNumber(transaction.getFromCard().getCardNumber());
-        dto.setToCardCardNumber(transaction.getToCard().getCardNumber());
+        dto.setFromCardCardNumber(encryptionUtil.maskLast4(transaction.getFromCard().getPanLast4()));
+        dto.setToCardCardNumber(encryptionUtil.maskLast4(transaction.getToCard().getPanLast4()));
 
         dto.setAmount(transaction.getAmount());
         dto.setDescription(transaction.getDescription());
@@ -31,28 +37,49 @@ public class TransactionMapper {
         return dto;
     }
 
-    public Transaction toEntity(Card toCard, Card fromCard, TransferRequest request) {
-        String description = request.getToCardId().equals(request.getFromCardId())
+    /**
+     * DTO перевода, выполненного одним SQL-запросом, без повторного чтения транзакции и карт.
+     */
+    public TransactionDto toDto(TransactionRepo.TransferResult result, TransferRequest request) {
+        TransactionDto dto = new TransactionDto();
+        dto.setId(result.getId());
+        dto.setFromCardId(request.getFromCardId());
+        dto.setToCardId(request.getToCardId());
+
+        dto.setFromCardCardNumber(encryptionUtil.maskLast4(result.getFromPanLast4()));
+        dto.setToCardCardNumber(encryptionUtil.maskLast4(result.getToPanLast4()));
+
+        dto.setAmount(request.getAmount());
+        dto.setDescription(describe(request));
+        dto.setStatus(TransactionStatus.SUCCESS.getDescription());
+        dto.setCreatedAt(result.getCreatedAt());
+        dto.setProcessedAt(result.getCreatedAt());
+
+        return dto;
+    }
+
+    public String describe(TransferRequest request) {
+        return request.getToCardId().equals(request.getFromCardId())
                 ? "Пополнение счета через терминал"
                 : request.getDescription();
+    }
+
+    public Transaction toEntity(Card toCard, Card fromCard, TransferRequest request) {
         return Transaction.builder()
                 .fromCard(fromCard)
                 .toCard(toCard)
                 .amount(request.getAmount())
-                .description(description)
+                .description(describe(request))
                 .status(TransactionStatus.SUCCESS.name())
                 .build();
     }
 
     public Transaction toEntityWithError(Card toCard, Card fromCard, TransferRequest request, String err) {
-        String description = request.getToCardId().equals(request.getFromCardId())
-                ? "Пополнение счета через терминал"
-                : request.getDescription();
         return Transaction.builder()
                 .fromCard(fromCard)
                 .toCard(toCard)
                 .amount(request.getAmount())
-                .description(description)
+                .description(describe(request))
                 .status(TransactionStatus.FAILED.name())
                 .errorMessage(err)
                 .build();
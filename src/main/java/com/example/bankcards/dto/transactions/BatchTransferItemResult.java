@@ -0,0 +1,26 @@
+package com.example.bankcards.dto.transactions;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Builder
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Schema(description = "Результат перевода из пакета")
+public class BatchTransferItemResult {
+    @Schema(description = "Позиция перевода в пакете", example = "0")
+    Integer index;
+
+    @Schema(description = "Выполнен ли перевод")
+    Boolean success;
+
+    @Schema(description = "Транзакция выполненного перевода")
+    TransactionDto transaction;
+
+    @Schema(description = "Причина отказа")
+    String errorMessage;
+}
@@ -0,0 +1,27 @@
+package com.example.bankcards.dto.transactions;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+/**
+ * Пакет переводов. Элементы намеренно не помечены {@code @Valid}: иначе валидатор перевода
+ * читал бы карты для каждого элемента, а пакет проверяется одной выборкой всех карт.
+ */
+@Getter
+@Setter
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Schema(description = "Пакет переводов между картами")
+public class BatchTransferRequest {
+
+    @Schema(description = "Переводы в порядке выполнения")
+    @NotEmpty(message = "Пакет должен содержать хотя бы один перевод")
+    List<@NotNull(message = "Перевод в пакете не может быть пустым") TransferRequest> transfers;
+}
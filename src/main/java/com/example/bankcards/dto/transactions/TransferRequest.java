@@ -17,7 +17,7 @@ import java.math.BigDecimal;
 @AllArgsConstructor
 @NoArgsConstructor
 @Schema(description = "Запрос на перевод между картами")
-@ValidTransactionRequest
+@ValidTransactionRequest(groups = ValidTransactionRequest.CardChecks.class)
 public class TransferRequest {
 
     @Schema(description = "ID карты отправителя", example = "1")
@@ -35,6 +35,15 @@ public class Card {
     @Column(name = "card_number", nullable = false)
     String cardNumber;
 
+    @Column(name = "card_number_hash", length = 64, unique = true)
+    String cardNumberHash;
+
+    @Column(name = "pan_last4", length = 4)
+    String panLast4;
+
+    @Column(name = "pan_bin", length = 6)
+    String panBin;
+
     @NotNull
     @ManyToOne(fetch = FetchType.LAZY, optional = false)
     @OnDelete(action = OnDeleteAction.CASCADE)
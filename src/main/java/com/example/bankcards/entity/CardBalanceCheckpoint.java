@@ -0,0 +1,48 @@
+package com.example.bankcards.entity;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import lombok.*;
+import org.hibernate.annotations.ColumnDefault;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Баланс карты с учётом всех её проводок до {@code posting_id} включительно;
+ * {@code as_of} — время последней из них.
+ */
+@Getter
+@Setter
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "card_balance_checkpoints",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"card_id", "posting_id"}))
+public class CardBalanceCheckpoint {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id", nullable = false)
+    private Long id;
+
+    @NotNull
+    @Column(name = "card_id", nullable = false)
+    private Long cardId;
+
+    @NotNull
+    @Column(name = "posting_id", nullable = false)
+    private Long postingId;
+
+    @NotNull
+    @Column(name = "balance", nullable = false, precision = 19, scale = 2)
+    private BigDecimal balance;
+
+    @NotNull
+    @Column(name = "as_of", nullable = false)
+    private Instant asOf;
+
+    @NotNull
+    @ColumnDefault("now()")
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+}
@@ -0,0 +1,34 @@
+package com.example.bankcards.entity;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import lombok.*;
+import org.hibernate.annotations.ColumnDefault;
+
+import java.time.Instant;
+
+/**
+ * Горизонт контрольных точек журнала (единственная строка с {@code id = 1}): все проводки
+ * с ID не больше {@code posting_id} уже учтены в контрольных точках. Пропуски ID за горизонтом
+ * хранятся в {@link LedgerPostingGap}.
+ */
+@Getter
+@Setter
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "ledger_checkpoint_horizon")
+public class LedgerCheckpointHorizon {
+    @Id
+    @Column(name = "id", nullable = false)
+    private Short id;
+
+    @NotNull
+    @Column(name = "posting_id", nullable = false)
+    private Long postingId;
+
+    @NotNull
+    @ColumnDefault("now()")
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+}
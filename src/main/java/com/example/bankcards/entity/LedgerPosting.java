@@ -0,0 +1,44 @@
+package com.example.bankcards.entity;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import lombok.*;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.Immutable;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Проводка журнала: положительная сумма — зачисление на карту, отрицательная — списание.
+ * Проводки перевода в сумме дают ноль; {@code card_id = null} — внешний счёт (пополнение через терминал),
+ * {@code transaction_id = null} — входящий остаток, перенесённый при создании журнала.
+ * Внешних ключей нет намеренно: журнал переживает удаление карт и транзакций.
+ */
+@Getter
+@Entity
+@Immutable
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "ledger_postings", indexes = @Index(name = "idx_ledger_postings_card_id", columnList = "card_id, id"))
+public class LedgerPosting {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id", nullable = false)
+    private Long id;
+
+    @Column(name = "transaction_id")
+    private Long transactionId;
+
+    @Column(name = "card_id")
+    private Long cardId;
+
+    @NotNull
+    @Column(name = "amount", nullable = false, precision = 19, scale = 2)
+    private BigDecimal amount;
+
+    @NotNull
+    @ColumnDefault("now()")
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+}
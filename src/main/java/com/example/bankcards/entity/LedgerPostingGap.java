@@ -0,0 +1,31 @@
+package com.example.bankcards.entity;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * Пропуск ID проводок за горизонтом контрольных точек: ID с {@code first_id} по {@code last_id}
+ * не видны; {@code seen_at} — когда пропуск был замечен впервые.
+ */
+@Getter
+@Setter
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "ledger_posting_gaps")
+public class LedgerPostingGap {
+    @Id
+    @Column(name = "first_id", nullable = false)
+    private Long firstId;
+
+    @NotNull
+    @Column(name = "last_id", nullable = false)
+    private Long lastId;
+
+    @NotNull
+    @Column(name = "seen_at", nullable = false)
+    private Instant seenAt;
+}
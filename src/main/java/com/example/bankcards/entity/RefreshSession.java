@@ -52,6 +52,12 @@ public class RefreshSession {
     @Column(name = "expires_in", nullable = false)
     private Long expiresIn;
 
+    @Column(name = "previous_token")
+    private UUID previousToken;
+
+    @Column(name = "rotated_at")
+    private Instant rotatedAt;
+
     @ColumnDefault("now()")
     @Column(name = "created_at")
 
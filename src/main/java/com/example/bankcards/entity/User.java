@@ -61,6 +61,12 @@ public class User implements UserDetails {
     @Builder.Default
     Boolean enabled = true;
 
+    @NotNull
+    @ColumnDefault("0")
+    @Column(name = "token_version", nullable = false)
+    @Builder.Default
+    Long tokenVersion = 0L;
+
     @NotNull
     @ColumnDefault("now()")
     @Column(name = "created_at", nullable = false)
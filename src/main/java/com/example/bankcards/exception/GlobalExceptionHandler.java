@@ -7,6 +7,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
@@ -32,6 +33,20 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(errorService.makeResponse(e), HttpStatus.FORBIDDEN);
     }
 
+    @ExceptionHandler(TooManyRequestsException.class)
+    public ResponseEntity<ErrorResponseBody> handleTooManyRequests(TooManyRequestsException e) {
+        log.warn("Request rejected: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(errorService.makeResponse(e));
+    }
+
+    @ExceptionHandler(IdempotencyKeyConflictException.class)
+    public ResponseEntity<ErrorResponseBody> handleIdempotencyKeyConflict(IdempotencyKeyConflictException e) {
+        log.warn("Idempotency key conflict: {}", e.getMessage());
+        return new ResponseEntity<>(errorService.makeResponse(e), HttpStatus.CONFLICT);
+    }
+
     @ExceptionHandler(IllegalStateException.class)
     public ResponseEntity<ErrorResponseBody> handleISE(IllegalStateException e) {
         log.error("IllegalStateException processing error: {}", e.getMessage());
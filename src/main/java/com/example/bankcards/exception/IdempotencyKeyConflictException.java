@@ -0,0 +1,12 @@
+package com.example.bankcards.exception;
+
+/**
+ * Ключ идемпотентности нельзя использовать для этого запроса: он занят другим запросом
+ * или запрос с ним ещё выполняется. Перевод при этом не выполнялся.
+ */
+public class IdempotencyKeyConflictException extends RuntimeException {
+
+    public IdempotencyKeyConflictException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.bankcards.exception;
+
+import lombok.Getter;
+
+/**
+ * Запрос отклонён из-за перегрузки или превышения лимита; клиенту стоит повторить его позже.
+ */
+@Getter
+public class TooManyRequestsException extends RuntimeException {
+    private final long retryAfterSeconds;
+
+    public TooManyRequestsException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
@@ -1,24 +1,35 @@
 package com.example.bankcards.repositories;
 
 import com.example.bankcards.entity.Card;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface CardRepository extends JpaRepository<Card, Long> {
 
-    Optional<Card> findByCardNumber(String cardNumber);
-    boolean existsByCardNumber(String cardNumber);
+    Optional<Card> findByCardNumberHash(String cardNumberHash);
+    boolean existsByCardNumberHash(String cardNumberHash);
     Page<Card> findByOwnerId(Long ownerId, Pageable pageable);
 
+    /**
+     * Блокирует карты одним {@code SELECT ... FOR UPDATE} в порядке возрастания ID,
+     * так что встречные переводы между одними и теми же картами не взаимоблокируются.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Card c WHERE c.id IN :ids ORDER BY c.id")
+    List<Card> findAllByIdForUpdate(@Param("ids") Collection<Long> ids);
+
     @Query("SELECT c FROM Card c WHERE c.owner.id = :ownerId AND c.status = 'ACTIVE'")
     List<Card> findActiveCardsByOwnerId(@Param("ownerId") Long ownerId);
 
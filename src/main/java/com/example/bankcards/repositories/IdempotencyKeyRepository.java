@@ -0,0 +1,43 @@
+package com.example.bankcards.repositories;
+
+import com.example.bankcards.entity.IdempotencyKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Optional;
+
+@Repository
+public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKey, Long> {
+    Optional<IdempotencyKey> findByUserIdAndIdempotencyKey(Long userId, String idempotencyKey);
+
+    /**
+     * Занимает ключ в текущей транзакции. Если тот же ключ занят незавершённой транзакцией,
+     * запрос ждёт её исхода: после коммита возвращает 0, после отката — занимает ключ сам.
+     */
+    @Modifying
+    @Query(value = """
+            INSERT INTO idempotency_keys (user_id, idempotency_key, request_hash, created_at)
+            VALUES (:userId, :idempotencyKey, :requestHash, now())
+            ON CONFLICT (user_id, idempotency_key) DO NOTHING
+            """, nativeQuery = true)
+    int claim(@Param("userId") Long userId,
+              @Param("idempotencyKey") String idempotencyKey,
+              @Param("requestHash") String requestHash);
+
+    @Modifying
+    @Query("UPDATE IdempotencyKey k SET k.transactionId = :transactionId " +
+           "WHERE k.userId = :userId AND k.idempotencyKey = :idempotencyKey")
+    int complete(@Param("userId") Long userId,
+                 @Param("idempotencyKey") String idempotencyKey,
+                 @Param("transactionId") Long transactionId);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM IdempotencyKey k WHERE k.createdAt < :before")
+    int deleteCreatedBefore(@Param("before") Instant before);
+}
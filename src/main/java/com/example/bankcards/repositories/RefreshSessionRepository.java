@@ -1,18 +1,59 @@
 package com.example.bankcards.repositories;
 
 import com.example.bankcards.entity.RefreshSession;
-import com.example.bankcards.entity.User;
-import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.util.List;
+import java.time.Instant;
 import java.util.Optional;
 import java.util.UUID;
 
 @Repository
 public interface RefreshSessionRepository extends JpaRepository<RefreshSession, Integer> {
     Optional<RefreshSession> findByRefreshToken(UUID refreshToken);
-    void deleteByRefreshToken(UUID refreshToken);
-    List<RefreshSession> findByUserOrderByCreatedAtAsc(User user, Pageable pageable);
+
+    /**
+     * Ротация на месте: токен строки заменяется новым одним запросом, прежний сохраняется в {@code previous_token}.
+     * Возвращает владельца сессии или пусто, если токен не найден, истёк, не совпал отпечаток
+     * или его уже сменил параллельный запрос.
+     */
+    @Transactional
+    @Query(value = """
+            UPDATE refresh_sessions
+            SET refresh_token = :newToken, previous_token = refresh_token,
+                rotated_at = :rotatedAt, expires_in = :expiresIn
+            WHERE refresh_token = :oldToken AND fingerprint = :fingerprint AND expires_in > :now
+            RETURNING user_id
+            """, nativeQuery = true)
+    Optional<Long> rotate(@Param("oldToken") UUID oldToken,
+                          @Param("newToken") UUID newToken,
+                          @Param("fingerprint") String fingerprint,
+                          @Param("now") long now,
+                          @Param("expiresIn") long expiresIn,
+                          @Param("rotatedAt") Instant rotatedAt);
+
+    /**
+     * Сессия, в которую токен был повёрнут не раньше {@code since}: её токен отдаётся повторным запросам.
+     */
+    Optional<RefreshSession> findByPreviousTokenAndRotatedAtAfter(UUID previousToken, Instant since);
+
+    /**
+     * Оставляет у пользователя только {@code keep} самых новых сессий одним запросом.
+     * Ротация на месте не меняет {@code created_at}, поэтому новизна сессии считается по последней ротации.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            DELETE FROM refresh_sessions
+            WHERE user_id = :userId
+              AND id NOT IN (SELECT id FROM refresh_sessions
+                             WHERE user_id = :userId
+                             ORDER BY COALESCE(rotated_at, created_at) DESC, id DESC
+                             LIMIT :keep)
+            """, nativeQuery = true)
+    int deleteAllExceptNewest(@Param("userId") Long userId, @Param("keep") int keep);
 }
@@ -8,6 +8,10 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Optional;
+
 @Repository
 public interface TransactionRepo extends JpaRepository<Transaction, Long> {
 
@@ -16,4 +20,60 @@ public interface TransactionRepo extends JpaRepository<Transaction, Long> {
 
     @Query("SELECT t FROM Transaction t WHERE t.fromCard.owner.id = :userId OR t.toCard.owner.id = :userId")
     Page<Transaction> findByUserId(@Param("userId") Long userId, Pageable pageable);
-}
\ No newline at end of file
+
+    /**
+     * Перевод одним запросом: карты блокируются в порядке ID, списание выполняется только с активной
+     * карты владельца при достаточном балансе, зачисление — только на его активную карту, и лишь после
+     * обоих обновлений записывается транзакция. Пустой результат означает, что одно из условий
+     * не выполнено, и вызывающая транзакция должна быть откачена.
+     * При совпадении карт списание пропускается (пополнение через терминал), а проводка списания
+     * ложится на внешний счёт ({@code card_id = null}).
+     */
+    @Query(value = """
+            WITH locked AS (
+                SELECT id FROM cards WHERE id IN (:fromCardId, :toCardId) ORDER BY id FOR UPDATE
+            ), debit AS (
+                UPDATE cards SET balance = balance - :amount, updated_at = now()
+                WHERE id = :fromCardId AND :fromCardId <> :toCardId
+                  AND owner_id = :userId AND status = 'ACTIVE' AND balance >= :amount
+                  AND id IN (SELECT id FROM locked)
+                RETURNING pan_last4
+            ), credit AS (
+                UPDATE cards SET balance = balance + :amount, updated_at = now()
+                WHERE id = :toCardId AND owner_id = :userId AND status = 'ACTIVE'
+                  AND id IN (SELECT id FROM locked)
+                  AND (:fromCardId = :toCardId OR EXISTS (SELECT 1 FROM debit))
+                RETURNING pan_last4
+            ), inserted AS (
+                INSERT INTO transactions (from_card_id, to_card_id, amount, description, status, created_at, processed_at)
+                SELECT :fromCardId, :toCardId, :amount, CAST(:description AS varchar), 'SUCCESS', now(), now() FROM credit
+                RETURNING id, created_at
+            ), posted AS (
+                INSERT INTO ledger_postings (transaction_id, card_id, amount, created_at)
+                SELECT i.id, CASE WHEN :fromCardId = :toCardId THEN CAST(NULL AS bigint) ELSE :fromCardId END,
+                       -CAST(:amount AS numeric), i.created_at
+                FROM inserted i
+                UNION ALL
+                SELECT i.id, :toCardId, :amount, i.created_at FROM inserted i
+            )
+            SELECT i.id AS id, i.created_at AS "createdAt",
+                   COALESCE((SELECT pan_last4 FROM debit), c.pan_last4) AS "fromPanLast4",
+                   c.pan_last4 AS "toPanLast4"
+            FROM inserted i CROSS JOIN credit c
+            """, nativeQuery = true)
+    Optional<TransferResult> transfer(@Param("fromCardId") Long fromCardId,
+                                      @Param("toCardId") Long toCardId,
+                                      @Param("userId") Long userId,
+                                      @Param("amount") BigDecimal amount,
+                                      @Param("description") String description);
+
+    interface TransferResult {
+        Long getId();
+
+        Instant getCreatedAt();
+
+        String getFromPanLast4();
+
+        String getToPanLast4();
+    }
+}
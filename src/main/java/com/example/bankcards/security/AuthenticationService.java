@@ -8,14 +8,15 @@ import com.example.bankcards.entity.Role;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.repositories.RefreshSessionRepository;
 import com.example.bankcards.service.UserService;
+import com.example.bankcards.util.ClientIpUtil;
 import com.example.bankcards.util.JwtUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.domain.PageRequest;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -23,8 +24,10 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
-import java.util.List;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.NoSuchElementException;
+import java.util.Optional;
 import java.util.UUID;
 
 @Slf4j
@@ -38,9 +41,22 @@ public class AuthenticationService {
     private final AuthenticationManager authenticationManager;
     private final RefreshSessionRepository refreshSessionRepository;
     private final DeviceFingerprintService deviceFingerprintService;
+    private final LoginThrottle loginThrottle;
 
     private static final String REFRESH_TOKEN_COOKIE_NAME = "refreshToken";
     private static final String REFRESH_TOKEN_PATH = "/api/auth";
+    private static final int MAX_SESSIONS_PER_USER = 5;
+    private static final int REFRESH_TOKEN_TTL_SECONDS = 60 * 60 * 24 * 30;
+    private static final Duration ROTATION_GRACE = Duration.ofSeconds(30);
+
+    /**
+     * Результаты недавних ротаций по старому токену: параллельные refresh одним токеном
+     * ждут одну ротацию и получают один и тот же новый токен.
+     */
+    private final Cache<UUID, Rotation> rotations = Caffeine.newBuilder()
+            .expireAfterWrite(ROTATION_GRACE)
+            .maximumSize(10_000)
+            .build();
 
     public void signUp(SignUpRequest request) {
         User user = userMapper.toEntity(request);
@@ -48,6 +64,8 @@ public class AuthenticationService {
     }
 
     public String signIn(SignInRequest signInRequest, HttpServletResponse response, HttpServletRequest request) {
+        loginThrottle.check(request.getRemoteAddr(), signInRequest.getPhoneNumber());
+
         authenticationManager.authenticate(new UsernamePasswordAuthenticationToken(
                 signInRequest.getPhoneNumber(),
                 signInRequest.getPassword()
@@ -58,10 +76,7 @@ public class AuthenticationService {
                 .loadUserByUsername(signInRequest.getPhoneNumber());
 
         String access = jwtService.generateToken(user);
-        List<RefreshSession> sessions = refreshSessionRepository.findByUserOrderByCreatedAtAsc((User) user, PageRequest.of(0, 5));
-        if (sessions.size() >= 5) {
-            refreshSessionRepository.deleteAll(sessions);
-        }
+        refreshSessionRepository.deleteAllExceptNewest(((User) user).getId(), MAX_SESSIONS_PER_USER - 1);
 
         String fingerprint = getOrGenerateFingerprint(request);
         generateRefreshToken((User) user, fingerprint, request, response);
@@ -69,26 +84,51 @@ public class AuthenticationService {
         return access;
     }
 
-    @Transactional
     public String refreshToken(UUID oldToken, HttpServletResponse response, HttpServletRequest request) {
         try {
             if (oldToken == null) {
                 throw new IllegalArgumentException("Old token is null");
             }
-            RefreshSession session = refreshSessionByRefreshToken(oldToken);
-            User user = session.getUser();
-
             String fingerprint = getOrGenerateFingerprint(request);
-            validateRefreshToken(session, fingerprint);
-            generateRefreshToken(user, fingerprint, request, response);
-            refreshSessionRepository.deleteByRefreshToken(oldToken);
-            return jwtService.generateToken(user);
+            Rotation rotation = rotations.get(oldToken, token -> rotate(token, fingerprint));
+            if (!rotation.fingerprint().equals(fingerprint)) {
+                throw new IllegalArgumentException("Fingerprint mismatch");
+            }
+
+            setRefreshToken(rotation.refreshToken(), response);
+            return jwtService.generateToken(userService.getById(rotation.userId()));
         } catch (NoSuchElementException | IllegalArgumentException e) {
             clearRefreshTokenCookie(response);
             throw e;
         }
     }
 
+    /**
+     * Меняет токен сессии на месте одним условным UPDATE. Если строка не обновилась, токен мог уже
+     * повернуть другой инстанс: тогда в пределах {@link #ROTATION_GRACE} отдаётся его результат,
+     * иначе выясняется причина отказа.
+     */
+    private Rotation rotate(UUID oldToken, String fingerprint) {
+        UUID newToken = UUID.randomUUID();
+        Instant now = Instant.now();
+        Optional<Long> userId = refreshSessionRepository.rotate(oldToken, newToken, fingerprint,
+                now.getEpochSecond(), now.getEpochSecond() + REFRESH_TOKEN_TTL_SECONDS, now);
+        if (userId.isPresent()) {
+            return new Rotation(userId.get(), newToken, fingerprint);
+        }
+
+        Optional<RefreshSession> successor = refreshSessionRepository
+                .findByPreviousTokenAndRotatedAtAfter(oldToken, now.minus(ROTATION_GRACE));
+        if (successor.isPresent() && successor.get().getFingerprint().equals(fingerprint)) {
+            log.debug("Refresh token was rotated concurrently, reusing the winning rotation");
+            RefreshSession session = successor.get();
+            return new Rotation(session.getUser().getId(), session.getRefreshToken(), fingerprint);
+        }
+
+        validateRefreshToken(refreshSessionByRefreshToken(oldToken), fingerprint);
+        throw new NoSuchElementException("Refresh token not found");
+    }
+
     private String getOrGenerateFingerprint(HttpServletRequest request) {
         String fingerprint = request.getHeader("Fingerprint");
 
@@ -107,7 +147,7 @@ public class AuthenticationService {
         cookie.setHttpOnly(true);
         cookie.setSecure(true);
         cookie.setPath(REFRESH_TOKEN_PATH);
-        cookie.setMaxAge(60 * 60 * 24 * 30);
+        cookie.setMaxAge(REFRESH_TOKEN_TTL_SECONDS);
         response.addCookie(cookie);
     }
 
@@ -118,27 +158,13 @@ public class AuthenticationService {
                 .user(user)
                 .fingerprint(fingerprint)
                 .ua(request.getHeader("User-Agent"))
-                .ip(getClientIpAddress(request))
-                .expiresIn(System.currentTimeMillis() / 1000 + (60 * 60 * 24 * 30))
+                .ip(ClientIpUtil.getClientIpAddress(request))
+                .expiresIn(System.currentTimeMillis() / 1000 + REFRESH_TOKEN_TTL_SECONDS)
                 .build();
         refreshSessionRepository.save(refreshSession);
         setRefreshToken(newToken, response);
     }
 
-    private String getClientIpAddress(HttpServletRequest request) {
-        String xForwardedFor = request.getHeader("X-Forwarded-For");
-        if (StringUtils.hasText(xForwardedFor)) {
-            return xForwardedFor.split(",")[0].trim();
-        }
-
-        String xRealIP = request.getHeader("X-Real-IP");
-        if (StringUtils.hasText(xRealIP)) {
-            return xRealIP;
-        }
-
-        return request.getRemoteAddr();
-    }
-
     private RefreshSession refreshSessionByRefreshToken(UUID refreshToken) {
         return refreshSessionRepository.findByRefreshToken(refreshToken)
                 .orElseThrow(() -> new NoSuchElementException("Refresh token not found"));
@@ -163,4 +189,7 @@ public class AuthenticationService {
         cookie.setMaxAge(0);
         response.addCookie(cookie);
     }
-}
\ No newline at end of file
+
+    private record Rotation(Long userId, UUID refreshToken, String fingerprint) {
+    }
+}
@@ -2,82 +2,75 @@ package com.example.bankcards.security;
 
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.stereotype.Component;
-import org.springframework.util.StringUtils;
 
-import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.util.ArrayList;
-import java.util.List;
 
+/**
+ * Отпечаток устройства для клиентов, которые не присылают заголовок {@code Fingerprint}.
+ * <p>
+ * Считается только из заголовков, которые не меняются между запросами одного клиента
+ * (User-Agent, Accept-Language, Accept-Encoding), поэтому refresh с того же устройства проходит проверку.
+ * IP клиента не учитывается: у мобильных клиентов он меняется при смене сети.
+ * Дайджест и буферы переиспользуются в пределах потока.
+ */
 @Component
 public class DeviceFingerprintService {
+    private static final String[] HEADERS = {"User-Agent", "Accept-Language", "Accept-Encoding"};
+    private static final int FINGERPRINT_BYTES = 8;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
 
-    public String generateFingerprint(HttpServletRequest request) {
-        List<String> fingerprintComponents = new ArrayList<>();
-
-        String clientIp = getClientIpAddress(request);
-        fingerprintComponents.add("ip:" + clientIp);
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
 
-        String userAgent = request.getHeader("User-Agent");
-        if (StringUtils.hasText(userAgent)) {
-            fingerprintComponents.add("ua:" + userAgent);
-        }
-
-        String acceptLanguage = request.getHeader("Accept-Language");
-        if (StringUtils.hasText(acceptLanguage)) {
-            fingerprintComponents.add("lang:" + acceptLanguage);
-        }
-
-        String acceptEncoding = request.getHeader("Accept-Encoding");
-        if (StringUtils.hasText(acceptEncoding)) {
-            fingerprintComponents.add("enc:" + acceptEncoding);
+    public String generateFingerprint(HttpServletRequest request) {
+        Scratch s = scratch.get();
+        MessageDigest digest = s.digest;
+        for (String header : HEADERS) {
+            String value = request.getHeader(header);
+            if (value != null) {
+                update(digest, s, value);
+            }
+            digest.update((byte) 0);
         }
 
-        String xForwardedFor = request.getHeader("X-Forwarded-For");
-        if (StringUtils.hasText(xForwardedFor)) {
-            fingerprintComponents.add("xff:" + xForwardedFor);
+        byte[] hash = digest.digest();
+        char[] hex = s.hex;
+        for (int i = 0; i < FINGERPRINT_BYTES; i++) {
+            hex[i * 2] = HEX[(hash[i] >> 4) & 0x0f];
+            hex[i * 2 + 1] = HEX[hash[i] & 0x0f];
         }
-
-        fingerprintComponents.add("time:" + System.currentTimeMillis());
-
-        String rawFingerprint = String.join("|", fingerprintComponents);
-
-        return hashString(rawFingerprint);
+        return new String(hex);
     }
 
-    private String getClientIpAddress(HttpServletRequest request) {
-        String xForwardedFor = request.getHeader("X-Forwarded-For");
-        if (StringUtils.hasText(xForwardedFor)) {
-            return xForwardedFor.split(",")[0].trim();
-        }
-
-        String xRealIP = request.getHeader("X-Real-IP");
-        if (StringUtils.hasText(xRealIP)) {
-            return xRealIP;
+    /**
+     * Передаёт строку в дайджест как UTF-16 без промежуточного {@code getBytes}.
+     */
+    private static void update(MessageDigest digest, Scratch s, String value) {
+        byte[] buffer = s.buffer;
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            if (length == buffer.length) {
+                digest.update(buffer, 0, length);
+                length = 0;
+            }
+            char c = value.charAt(i);
+            buffer[length++] = (byte) (c >> 8);
+            buffer[length++] = (byte) c;
         }
-
-        return request.getRemoteAddr();
+        digest.update(buffer, 0, length);
     }
 
-    private String hashString(String input) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(input.getBytes(StandardCharsets.UTF_8));
-            StringBuilder hexString = new StringBuilder();
+    private static final class Scratch {
+        private final MessageDigest digest;
+        private final byte[] buffer = new byte[256];
+        private final char[] hex = new char[FINGERPRINT_BYTES * 2];
 
-            for (byte b : hash) {
-                String hex = Integer.toHexString(0xff & b);
-                if (hex.length() == 1) {
-                    hexString.append('0');
-                }
-                hexString.append(hex);
+        private Scratch() {
+            try {
+                this.digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 недоступен", e);
             }
-
-            return hexString.substring(0, 16);
-
-        } catch (NoSuchAlgorithmException e) {
-            return "fp_" + Math.abs(input.hashCode());
         }
     }
 }
@@ -2,6 +2,7 @@ package com.example.bankcards.security;
 
 import com.example.bankcards.service.UserService;
 import com.example.bankcards.util.JwtUtil;
+import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.JwtException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
@@ -10,6 +11,7 @@ import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContext;
@@ -33,6 +35,11 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtUtil jwtService;
     private final UserService userService;
+    private final TokenRevocationRegistry revocationRegistry;
+    private final VerifiedTokenCache verifiedTokenCache;
+
+    @Value("${app.security.jwt.stateless-principal:false}")
+    private boolean statelessPrincipal;
 
     private static final List<String> EXCLUDED_PATHS = Arrays.asList(
             "/auth/sign-in",
@@ -74,37 +81,33 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         String jwt = authHeader.substring(BEARER_PREFIX.length());
         try {
-            if (!jwtService.validateToken(jwt)) {
-                log.debug("Invalid JWT token");
-                filterChain.doFilter(request, response);
-                return;
-            }
-
-            String username = jwtService.extractUsername(jwt);
+            Claims claims = verifiedTokenCache.parse(jwt);
+            String username = claims.getSubject();
             log.debug("Extracted username from JWT: {}", username);
 
             if (StringUtils.isNotEmpty(username) &&
                 SecurityContextHolder.getContext().getAuthentication() == null) {
 
-                UserDetails userDetails = userService
-                        .userDetailsService()
-                        .loadUserByUsername(username);
+                UserDetails userDetails = resolvePrincipal(claims, username);
+                if (userDetails == null) {
+                    log.debug("Token for user {} has been revoked", username);
+                    filterChain.doFilter(request, response);
+                    return;
+                }
 
-                if (Boolean.TRUE.equals(jwtService.validateToken(jwt, userDetails))) {
-                    SecurityContext context = SecurityContextHolder.createEmptyContext();
+                SecurityContext context = SecurityContextHolder.createEmptyContext();
 
-                    UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
-                            userDetails,
-                            null,
-                            userDetails.getAuthorities()
-                    );
+                UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
+                        userDetails,
+                        null,
+                        userDetails.getAuthorities()
+                );
 
-                    authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                    context.setAuthentication(authToken);
-                    SecurityContextHolder.setContext(context);
+                authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                context.setAuthentication(authToken);
+                SecurityContextHolder.setContext(context);
 
-                    log.debug("Set SecurityContext for user: {}", username);
-                }
+                log.debug("Set SecurityContext for user: {}", username);
             }
         } catch (JwtException | IllegalArgumentException e) {
             log.warn("JWT validation failed: {}", e.getMessage());
@@ -112,4 +115,24 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         filterChain.doFilter(request, response);
     }
-}
\ No newline at end of file
+
+    /**
+     * Собирает принципал из claims, если в токене есть ID, роль и версия; для старых токенов
+     * пользователь загружается из БД. Для отозванных токенов возвращает {@code null}.
+     */
+    private UserDetails resolvePrincipal(Claims claims, String username) {
+        if (statelessPrincipal) {
+            Long userId = jwtService.extractUserId(claims);
+            Long tokenVersion = jwtService.extractTokenVersion(claims);
+            String role = claims.get(JwtUtil.ROLE_CLAIM, String.class);
+            if (userId != null && tokenVersion != null && role != null) {
+                return revocationRegistry.isRevoked(userId, tokenVersion)
+                        ? null
+                        : new JwtPrincipal(userId, username, role, tokenVersion);
+            }
+        }
+
+        UserDetails userDetails = userService.userDetailsService().loadUserByUsername(username);
+        return userDetails.isEnabled() ? userDetails : null;
+    }
+}
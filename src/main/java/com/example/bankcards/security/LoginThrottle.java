@@ -0,0 +1,69 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.exception.TooManyRequestsException;
+import com.example.bankcards.util.GcraRateLimiter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ограничивает попытки входа по IP клиента и по номеру телефона до любой работы с паролем.
+ * IP берётся из {@code request.getRemoteAddr()}: заголовки прокси учитываются только через
+ * {@code server.forward-headers-strategy}, иначе клиент обходил бы лимит, подставляя свой X-Forwarded-For.
+ */
+@Slf4j
+@Component
+public class LoginThrottle {
+    private final GcraRateLimiter byIp;
+    private final GcraRateLimiter byPhone;
+    private final Counter rejectedByIp;
+    private final Counter rejectedByPhone;
+
+    public LoginThrottle(MeterRegistry meterRegistry,
+                         @Value("${app.security.login-throttle.ip.limit:20}") int ipLimit,
+                         @Value("${app.security.login-throttle.ip.burst:20}") int ipBurst,
+                         @Value("${app.security.login-throttle.phone.limit:5}") int phoneLimit,
+                         @Value("${app.security.login-throttle.phone.burst:5}") int phoneBurst,
+                         @Value("${app.security.login-throttle.period:PT1M}") Duration period,
+                         @Value("${app.security.login-throttle.max-keys:100000}") long maxKeys) {
+        this.byIp = new GcraRateLimiter(ipLimit, period, ipBurst, maxKeys);
+        this.byPhone = new GcraRateLimiter(phoneLimit, period, phoneBurst, maxKeys);
+        this.rejectedByIp = Counter.builder("login.throttled").tag("key", "ip").register(meterRegistry);
+        this.rejectedByPhone = Counter.builder("login.throttled").tag("key", "phone").register(meterRegistry);
+    }
+
+    /**
+     * @throws TooManyRequestsException если исчерпан лимит IP или номера телефона
+     */
+    public void check(String clientIp, String phoneNumber) {
+        long waitNanos = byIp.tryAcquire(clientIp);
+        if (waitNanos > 0) {
+            rejectedByIp.increment();
+            throw rejected(waitNanos);
+        }
+
+        waitNanos = byPhone.tryAcquire(phoneNumber);
+        if (waitNanos > 0) {
+            rejectedByPhone.increment();
+            log.warn("Login attempts throttled for phone {}", maskPhoneNumber(phoneNumber));
+            throw rejected(waitNanos);
+        }
+    }
+
+    private static String maskPhoneNumber(String phoneNumber) {
+        if (phoneNumber == null || phoneNumber.length() < 4) {
+            return "****";
+        }
+        return "****" + phoneNumber.substring(phoneNumber.length() - 4);
+    }
+
+    private static TooManyRequestsException rejected(long waitNanos) {
+        long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+        return new TooManyRequestsException("Слишком много попыток входа, повторите попытку позже", retryAfterSeconds);
+    }
+}
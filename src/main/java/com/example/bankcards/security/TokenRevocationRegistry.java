@@ -0,0 +1,87 @@
+package com.example.bankcards.security;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Реестр пользователей, чьи токены больше нельзя принимать: заблокированных, удалённых
+ * или с увеличенной версией токена. Хранятся только они, поэтому для остальных проверка — один промах по map.
+ * <p>
+ * Локальные изменения приходят через {@link UserAccessChangedEvent} после коммита, изменения с других
+ * инстансов — периодической синхронизацией. Записи сливаются по версии, поэтому синхронизация,
+ * прочитавшая таблицу до локального коммита, не откатит отзыв.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TokenRevocationRegistry {
+    private static final String SELECT_RESTRICTED =
+            "SELECT id, token_version, enabled FROM users WHERE token_version > 0 OR enabled = false";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<Long, AccessState> states = new ConcurrentHashMap<>();
+    private final Map<Long, Instant> deleted = new ConcurrentHashMap<>();
+
+    @Value("${app.security.jwt.stateless-principal:false}")
+    private boolean enabled;
+
+    @Value("${app.security.jwt.deleted-retention:P5D}")
+    private Duration deletedRetention;
+
+    /**
+     * Нужно ли отклонить токен пользователя, выпущенный с версией {@code tokenVersion}.
+     */
+    public boolean isRevoked(Long userId, long tokenVersion) {
+        if (deleted.containsKey(userId)) {
+            return true;
+        }
+        AccessState state = states.get(userId);
+        return state != null && (!state.enabled() || tokenVersion < state.version());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserAccessChanged(UserAccessChangedEvent event) {
+        if (event.deleted()) {
+            deleted.put(event.userId(), Instant.now());
+            states.remove(event.userId());
+            return;
+        }
+        merge(event.userId(), new AccessState(event.tokenVersion(), event.enabled()));
+        log.debug("Access state updated for user {}: version={}, enabled={}",
+                event.userId(), event.tokenVersion(), event.enabled());
+    }
+
+    @Scheduled(initialDelay = 0, fixedDelayString = "${app.security.jwt.revocation-sync-interval:PT30S}")
+    public void sync() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            jdbcTemplate.query(SELECT_RESTRICTED, rs -> {
+                merge(rs.getLong("id"), new AccessState(rs.getLong("token_version"), rs.getBoolean("enabled")));
+            });
+            Instant cutoff = Instant.now().minus(deletedRetention);
+            deleted.values().removeIf(deletedAt -> deletedAt.isBefore(cutoff));
+            log.debug("Token revocation registry synced: {} restricted, {} deleted users", states.size(), deleted.size());
+        } catch (RuntimeException e) {
+            log.warn("Token revocation sync failed: {}", e.getMessage());
+        }
+    }
+
+    private void merge(Long userId, AccessState state) {
+        states.merge(userId, state, (current, incoming) -> incoming.version() >= current.version() ? incoming : current);
+    }
+
+    private record AccessState(long version, boolean enabled) {
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.bankcards.security;
+
+/**
+ * Публикуется при изменении доступа пользователя: блокировке, разблокировке или удалении.
+ * Токены с версией ниже {@code tokenVersion} после этого недействительны.
+ */
+public record UserAccessChangedEvent(Long userId, long tokenVersion, boolean enabled, boolean deleted) {
+}
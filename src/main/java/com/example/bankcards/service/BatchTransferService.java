@@ -0,0 +1,227 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.mappers.TransactionMapper;
+import com.example.bankcards.dto.transactions.BatchTransferItemResult;
+import com.example.bankcards.dto.transactions.TransferRequest;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.enums.CardStatus;
+import com.example.bankcards.enums.TransactionStatus;
+import com.example.bankcards.repositories.CardRepository;
+import com.example.bankcards.util.AuthenticatedUserUtil;
+import com.example.bankcards.util.TransactionRetryTemplate;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Пакетные переводы. Все карты пакета блокируются одним запросом в порядке ID, переводы проверяются
+ * по очереди против текущих балансов в памяти, затем изменения применяются одним JDBC-батчем
+ * на изменившиеся карты, одним батчем вставки транзакций и одним батчем проводок журнала.
+ * Отклонённые переводы не мешают остальным.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BatchTransferService {
+    private static final String UPDATE_BALANCE =
+            "UPDATE cards SET balance = balance + ?, updated_at = ? WHERE id = ?";
+    private static final String INSERT_TRANSACTION =
+            "INSERT INTO transactions (from_card_id, to_card_id, amount, description, status, created_at, processed_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final List<String> VALIDATED_PROPERTIES = List.of("fromCardId", "toCardId", "amount", "description");
+
+    private final CardRepository cardRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionRetryTemplate retryTemplate;
+    private final TransactionMapper transactionMapper;
+    private final LedgerService ledgerService;
+    private final AuthenticatedUserUtil userUtil;
+    private final Validator validator;
+
+    @Value("${app.transfer.batch.max-size:1000}")
+    private int maxSize;
+
+    public List<BatchTransferItemResult> transfer(List<TransferRequest> requests) {
+        if (requests.size() > maxSize) {
+            throw new IllegalArgumentException("Пакет не может содержать более " + maxSize + " переводов");
+        }
+        if (requests.stream().anyMatch(Objects::isNull)) {
+            throw new IllegalArgumentException("Перевод в пакете не может быть пустым");
+        }
+
+        Long userId = userUtil.getCurrentUserId();
+        List<BatchTransferItemResult> results = retryTemplate.execute(
+                "Пакетный перевод пользователя " + userId, status -> apply(requests, userId));
+
+        long succeeded = results.stream().filter(BatchTransferItemResult::getSuccess).count();
+        log.info("Пакетный перевод пользователя {}: выполнено {} из {}", userId, succeeded, requests.size());
+        return results;
+    }
+
+    private List<BatchTransferItemResult> apply(List<TransferRequest> requests, Long userId) {
+        Set<Long> cardIds = new TreeSet<>();
+        for (TransferRequest request : requests) {
+            if (request.getFromCardId() != null) {
+                cardIds.add(request.getFromCardId());
+            }
+            if (request.getToCardId() != null) {
+                cardIds.add(request.getToCardId());
+            }
+        }
+        Map<Long, Card> cards = cardIds.isEmpty() ? Map.of() : cardRepository.findAllByIdForUpdate(cardIds).stream()
+                .collect(Collectors.toMap(Card::getId, Function.identity()));
+
+        Map<Long, BigDecimal> balances = new HashMap<>();
+        cards.values().forEach(card -> balances.put(card.getId(), card.getBalance()));
+        Map<Long, BigDecimal> deltas = new TreeMap<>();
+        Instant now = Instant.now();
+
+        BatchTransferItemResult[] results = new BatchTransferItemResult[requests.size()];
+        List<Integer> accepted = new ArrayList<>();
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < requests.size(); i++) {
+            TransferRequest request = requests.get(i);
+            String error = check(request, cards, balances, userId);
+            if (error != null) {
+                results[i] = BatchTransferItemResult.builder().index(i).success(false).errorMessage(error).build();
+                continue;
+            }
+
+            BigDecimal amount = request.getAmount();
+            if (!request.getFromCardId().equals(request.getToCardId())) {
+                balances.merge(request.getFromCardId(), amount.negate(), BigDecimal::add);
+                deltas.merge(request.getFromCardId(), amount.negate(), BigDecimal::add);
+            }
+            balances.merge(request.getToCardId(), amount, BigDecimal::add);
+            deltas.merge(request.getToCardId(), amount, BigDecimal::add);
+
+            accepted.add(i);
+            transactions.add(Transaction.builder()
+                    .fromCard(cards.get(request.getFromCardId()))
+                    .toCard(cards.get(request.getToCardId()))
+                    .amount(amount)
+                    .description(transactionMapper.describe(request))
+                    .status(TransactionStatus.SUCCESS.name())
+                    .createdAt(now)
+                    .processedAt(now)
+                    .build());
+        }
+
+        updateBalances(deltas, now);
+        insertTransactions(transactions);
+        ledgerService.record(transactions);
+
+        for (int i = 0; i < accepted.size(); i++) {
+            results[accepted.get(i)] = BatchTransferItemResult.builder()
+                    .index(accepted.get(i))
+                    .success(true)
+                    .transaction(transactionMapper.toDto(transactions.get(i)))
+                    .build();
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Проверки {@link com.example.bankcards.validations.TransferValidator} по уже заблокированным картам
+     * и балансам с учётом предыдущих переводов пакета. Возвращает причину отказа или {@code null}.
+     */
+    private String check(TransferRequest request, Map<Long, Card> cards, Map<Long, BigDecimal> balances, Long userId) {
+        for (String property : VALIDATED_PROPERTIES) {
+            Set<ConstraintViolation<TransferRequest>> violations = validator.validateProperty(request, property);
+            if (!violations.isEmpty()) {
+                return violations.iterator().next().getMessage();
+            }
+        }
+
+        Card fromCard = cards.get(request.getFromCardId());
+        if (fromCard == null) {
+            return "Карта отправителя не найдена";
+        }
+        Card toCard = cards.get(request.getToCardId());
+        if (toCard == null) {
+            return "Карта получателя не найдена";
+        }
+
+        String error = checkCard(fromCard, userId, "отправителя");
+        if (error == null) {
+            error = checkCard(toCard, userId, "получателя");
+        }
+        if (error == null && !request.getFromCardId().equals(request.getToCardId())
+                && balances.get(fromCard.getId()).compareTo(request.getAmount()) < 0) {
+            error = "Недостаточно средств на карте отправителя";
+        }
+        return error;
+    }
+
+    private static String checkCard(Card card, Long userId, String cardRole) {
+        if (!Objects.equals(card.getOwner().getId(), userId)) {
+            return "Карта " + cardRole + " не принадлежит пользователю";
+        }
+        if (CardStatus.BLOCKED.name().equals(card.getStatus())) {
+            return "Карта " + cardRole + " заблокирована";
+        }
+        if (CardStatus.EXPIRED.name().equals(card.getStatus())) {
+            return "Срок действия карты " + cardRole + " истек";
+        }
+        return null;
+    }
+
+    private void updateBalances(Map<Long, BigDecimal> deltas, Instant now) {
+        List<Object[]> updates = deltas.entrySet().stream()
+                .filter(delta -> delta.getValue().signum() != 0)
+                .map(delta -> new Object[]{delta.getValue(), Timestamp.from(now), delta.getKey()})
+                .toList();
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_BALANCE, updates);
+        }
+    }
+
+    private void insertTransactions(List<Transaction> transactions) {
+        if (transactions.isEmpty()) {
+            return;
+        }
+
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(connection -> connection.prepareStatement(INSERT_TRANSACTION, new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        Transaction transaction = transactions.get(i);
+                        ps.setLong(1, transaction.getFromCard().getId());
+                        ps.setLong(2, transaction.getToCard().getId());
+                        ps.setBigDecimal(3, transaction.getAmount());
+                        ps.setString(4, transaction.getDescription());
+                        ps.setString(5, transaction.getStatus());
+                        ps.setTimestamp(6, Timestamp.from(transaction.getCreatedAt()));
+                        ps.setTimestamp(7, Timestamp.from(transaction.getProcessedAt()));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return transactions.size();
+                    }
+                }, keyHolder);
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        for (int i = 0; i < transactions.size(); i++) {
+            transactions.get(i).setId(((Number) keys.get(i).get("id")).longValue());
+        }
+    }
+}
@@ -7,6 +7,9 @@ import com.example.bankcards.entity.User;
 import com.example.bankcards.enums.CardStatus;
 import com.example.bankcards.repositories.CardRepository;
 import com.example.bankcards.repositories.UserRepository;
+import com.example.bankcards.util.AuthenticatedUserUtil;
+import com.example.bankcards.util.CardNumberAllocator;
+import com.example.bankcards.util.CardNumberCache;
 import com.example.bankcards.util.EncryptionUtil;
 import jakarta.validation.ValidationException;
 import lombok.RequiredArgsConstructor;
@@ -33,6 +36,9 @@ public class CardService {
     private final UserRepository userRepository;
     private final EncryptionUtil encryptionUtil;
     private final CardMapper cardMapper;
+    private final CardNumberCache cardNumberCache;
+    private final CardNumberAllocator cardNumberAllocator;
+    private final AuthenticatedUserUtil userUtil;
     private static final String CARD_NOT_FOUND = "Карта не найдена!";
 
 
@@ -41,12 +47,15 @@ public class CardService {
 
         User owner = userRepository.findById(ownerId)
                 .orElseThrow(() -> new NoSuchElementException("Пользователь с номером телефона " + ownerId + " не найден"));
-        String plainCardNumber = encryptionUtil.generateCardNumber();
+        String plainCardNumber = cardNumberAllocator.allocate();
         String encryptedCardNumber = encryptionUtil.encryptCardNumber(plainCardNumber);
 
         log.debug("Создается карта с зашифрованным номером для пользователя: {}", owner.getFullName());
 
-        Card card = cardMapper.createEntity(owner, encryptedCardNumber, cardType);
+        Card card = cardMapper.createEntity(owner, encryptedCardNumber,
+                encryptionUtil.hashCardNumber(plainCardNumber),
+                encryptionUtil.panLast4(plainCardNumber),
+                encryptionUtil.panBin(plainCardNumber), cardType);
         Card savedCard = cardRepository.save(card);
 
         log.info("Карта создана с ID: {}", savedCard.getId());
@@ -62,26 +71,37 @@ public class CardService {
 
     @Transactional(readOnly = true)
     public CardDto getCardByNumber(String cardNumber) {
-        String encryptedNumber = encryptionUtil.encryptCardNumber(cardNumber);
-        Card card = cardRepository.findByCardNumber(encryptedNumber)
+        String cardNumberHash = encryptionUtil.hashCardNumber(cardNumber);
+        Card card = cardRepository.findByCardNumberHash(cardNumberHash)
                 .orElseThrow(() -> new NoSuchElementException("Карта с указанным номером не найдена"));
         return cardMapper.toDto(card);
     }
 
     @Transactional(readOnly = true)
     public Page<CardDto> getUserCards(Long userId, Pageable pageable) {
-        return cardRepository.findByOwnerId(userId, pageable)
-                .map(cardMapper::toDto);
+        Page<Card> cards = cardRepository.findByOwnerId(userId, pageable);
+        warmForOwner(userId, cards.getContent());
+        return cards.map(cardMapper::toDto);
     }
 
     @Transactional(readOnly = true)
     public List<CardDto> getUserActiveCards(Long userId) {
-        return cardRepository.findActiveCardsByOwnerId(userId)
-                .stream()
+        List<Card> cards = cardRepository.findActiveCardsByOwnerId(userId);
+        warmForOwner(userId, cards);
+        return cards.stream()
                 .map(cardMapper::toDto)
                 .toList();
     }
 
+    /**
+     * Номера раскрываются только владельцу, поэтому и расшифровывать их заранее имеет смысл только для него.
+     */
+    private void warmForOwner(Long ownerId, List<Card> cards) {
+        if (ownerId != null && ownerId.equals(userUtil.getCurrentUserId())) {
+            cardNumberCache.warm(cards);
+        }
+    }
+
 
 
     public void blockCard(Long cardId, String reason) {
@@ -122,29 +142,6 @@ public class CardService {
         return cardMapper.toDto(updatedCard);
     }
 
-    public void addBalance(Long cardId, BigDecimal amount) {
-        log.info("Пополнение карты с ID: {} на сумму: {}", cardId, amount);
-        Card card = cardRepository.findById(cardId)
-                .orElseThrow(() -> new NoSuchElementException(CARD_NOT_FOUND));
-
-        card.setBalance(card.getBalance().add(amount));
-        cardRepository.save(card);
-
-        log.info("Баланс карты {} пополнен на {}", card, amount);
-    }
-
-    public void deductBalance(Long cardId, BigDecimal amount) {
-        log.info("Списание с карты с ID: {} суммы: {}", cardId, amount);
-        Card card = cardRepository.findById(cardId)
-                .orElseThrow(() -> new NoSuchElementException("Карта не найдена"));
-
-        card.setBalance(card.getBalance().subtract(amount));
-        cardRepository.save(card);
-
-        log.info("С карты {} списано {}", card, amount);
-    }
-
-
     @Transactional
     @Scheduled(cron = "0 0 0 * * *")
     public void updateExpiredCards() {
@@ -174,6 +171,7 @@ public class CardService {
         }
 
         cardRepository.delete(card);
+        cardNumberCache.evict(cardId);
         log.info("Карта {} удалена", card);
     }
 
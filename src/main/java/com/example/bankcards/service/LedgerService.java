@@ -0,0 +1,79 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Transaction;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Журнал проводок по картам. Каждый успешный перевод даёт две проводки с нулевой суммой — списание
+ * с карты отправителя и зачисление на карту получателя, — которые пишутся в той же транзакции,
+ * что и изменение {@code cards.balance}. Журнал только дополняется, порядок задаёт возрастающий ID проводки.
+ */
+@Service
+@RequiredArgsConstructor
+public class LedgerService {
+    private static final String INSERT_POSTING =
+            "INSERT INTO ledger_postings (transaction_id, card_id, amount, created_at) VALUES (?, ?, ?, ?)";
+    private static final int[] POSTING_TYPES = {Types.BIGINT, Types.BIGINT, Types.NUMERIC, Types.TIMESTAMP};
+    private static final String SELECT_CHECKPOINT =
+            "SELECT posting_id, balance FROM card_balance_checkpoints " +
+            "WHERE card_id = ? AND as_of <= ? ORDER BY posting_id DESC LIMIT 1";
+    private static final String SUM_POSTINGS =
+            "SELECT COALESCE(SUM(amount), 0) FROM ledger_postings WHERE card_id = ? AND id > ? AND created_at <= ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Записывает проводки успешных переводов. Должен вызываться в транзакции, изменившей балансы.
+     * Пополнение через терминал (карта отправителя совпадает с картой получателя) списывается
+     * с внешнего счёта — проводки с {@code card_id = null}.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(List<Transaction> transactions) {
+        if (transactions.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> postings = new ArrayList<>(transactions.size() * 2);
+        for (Transaction transaction : transactions) {
+            Long fromCardId = transaction.getFromCard().getId();
+            Long toCardId = transaction.getToCard().getId();
+            Timestamp createdAt = Timestamp.from(transaction.getCreatedAt() != null ? transaction.getCreatedAt() : Instant.now());
+
+            postings.add(new Object[]{transaction.getId(), fromCardId.equals(toCardId) ? null : fromCardId,
+                    transaction.getAmount().negate(), createdAt});
+            postings.add(new Object[]{transaction.getId(), toCardId, transaction.getAmount(), createdAt});
+        }
+        jdbcTemplate.batchUpdate(INSERT_POSTING, postings, POSTING_TYPES);
+    }
+
+    /**
+     * Баланс карты на момент {@code at}: последняя контрольная точка не позже этого момента
+     * плюс проводки после неё, поэтому читаются только проводки с последней контрольной точки.
+     */
+    @Transactional(readOnly = true)
+    public BigDecimal balanceAsOf(Long cardId, Instant at) {
+        Timestamp timestamp = Timestamp.from(at);
+        List<Map<String, Object>> checkpoint = jdbcTemplate.queryForList(SELECT_CHECKPOINT, cardId, timestamp);
+
+        long postingId = 0;
+        BigDecimal balance = BigDecimal.ZERO;
+        if (!checkpoint.isEmpty()) {
+            postingId = ((Number) checkpoint.get(0).get("posting_id")).longValue();
+            balance = (BigDecimal) checkpoint.get(0).get("balance");
+        }
+
+        return balance.add(jdbcTemplate.queryForObject(SUM_POSTINGS, BigDecimal.class, cardId, postingId, timestamp));
+    }
+}
@@ -5,65 +5,275 @@ import com.example.bankcards.dto.transactions.TransactionDto;
 import com.example.bankcards.dto.transactions.TransferRequest;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.enums.CardStatus;
+import com.example.bankcards.exception.IdempotencyKeyConflictException;
 import com.example.bankcards.repositories.CardRepository;
+import com.example.bankcards.repositories.IdempotencyKeyRepository;
 import com.example.bankcards.repositories.TransactionRepo;
 import com.example.bankcards.util.AuthenticatedUserUtil;
+import com.example.bankcards.util.IdempotencyCache;
+import com.example.bankcards.util.TransactionRetryTemplate;
+import com.example.bankcards.validations.ValidTransactionRequest;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.ConstraintViolationException;
+import jakarta.validation.Validator;
+import jakarta.validation.groups.Default;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class TransactionService {
+    private static final String SQL_MODE = "sql";
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 128;
 
     private final TransactionRepo transactionRepository;
     private final AuthenticatedUserUtil userUtil;
     private final CardRepository cardRepository;
-    private final CardService cardService;
     private final TransactionMapper transactionMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionRetryTemplate retryTemplate;
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final IdempotencyCache idempotencyCache;
+    private final Validator validator;
+    private final LedgerService ledgerService;
 
-    @Transactional
+    @Value("${app.transfer.mode:locking}")
+    private String transferMode;
+
+    /**
+     * Перевод без ключа идемпотентности, см. {@link #transferBetweenUserCards(TransferRequest, String)}.
+     */
     public TransactionDto transferBetweenUserCards(TransferRequest request) {
-        Card fromCard = cardRepository.findById(request.getFromCardId())
-                .orElseThrow(() -> new NoSuchElementException("Карта отправителя не найдена"));
+        return transferBetweenUserCards(request, null);
+    }
+
+    /**
+     * Перевод по запросу клиента с необязательным ключом идемпотентности.
+     * Повтор с тем же ключом возвращает результат первого перевода и не меняет балансы.
+     * Запрос проверяется только для нового ключа: после первого перевода средств на повтор может уже не хватать.
+     * <p>
+     * Перевод выполняется в отдельной транзакции одним SQL-запросом ({@code app.transfer.mode=sql})
+     * или с блокировкой обеих карт ({@code locking}, по умолчанию) и повторяется при конфликте блокировок
+     * или ошибке сериализации с экспоненциальной задержкой и полным джиттером.
+     */
+    public TransactionDto transferBetweenUserCards(TransferRequest request, String idempotencyKey) {
+        if (idempotencyKey == null) {
+            validate(request);
+            return transferWithRetry(request, null, null, null);
+        }
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            throw new IllegalArgumentException("Ключ идемпотентности должен содержать от 1 до "
+                    + MAX_IDEMPOTENCY_KEY_LENGTH + " символов");
+        }
+
+        Long userId = userUtil.getCurrentUserId();
+        String requestHash = requestHash(request);
+        return idempotencyCache.execute(userId, idempotencyKey, requestHash, () -> {
+            TransactionDto completed = transactionTemplate.execute(status ->
+                    findCompleted(userId, idempotencyKey, requestHash).orElse(null));
+            if (completed != null) {
+                log.info("Повтор перевода с ключом идемпотентности {}, возвращена транзакция {}",
+                        idempotencyKey, completed.getId());
+                return completed;
+            }
+            validate(request);
+            return transferWithRetry(request, userId, idempotencyKey, requestHash);
+        });
+    }
+
+    private TransactionDto transferWithRetry(TransferRequest request, Long userId,
+                                             String idempotencyKey, String requestHash) {
+        try {
+            return retryTemplate.execute(
+                    "Перевод с карты " + request.getFromCardId() + " на карту " + request.getToCardId(),
+                    status -> transferOnce(request, userId, idempotencyKey, requestHash));
+        } catch (ConcurrencyFailureException | IdempotencyKeyConflictException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            recordFailure(request, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Сохраняет неудачный перевод в отдельной транзакции: транзакция перевода к этому моменту откачена
+     * вместе со всем, что в ней было записано. Записывается только перевод между существующими картами
+     * текущего пользователя, чтобы чужие попытки не попадали в историю его карт.
+     */
+    private void recordFailure(TransferRequest request, RuntimeException error) {
+        if (request.getFromCardId() == null || request.getToCardId() == null || request.getAmount() == null) {
+            return;
+        }
+
+        Long userId = userUtil.getCurrentUserId();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                Map<Long, Card> cards = cardRepository.findAllById(List.of(request.getFromCardId(), request.getToCardId()))
+                        .stream()
+                        .collect(Collectors.toMap(Card::getId, Function.identity()));
+                Card fromCard = cards.get(request.getFromCardId());
+                Card toCard = cards.get(request.getToCardId());
+                if (fromCard == null || toCard == null
+                        || !Objects.equals(fromCard.getOwner().getId(), userId)
+                        || !Objects.equals(toCard.getOwner().getId(), userId)) {
+                    return;
+                }
+                transactionRepository.save(transactionMapper.toEntityWithError(toCard, fromCard, request, error.getMessage()));
+            });
+        } catch (RuntimeException e) {
+            log.error("Не удалось сохранить неудачный перевод: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Одна попытка перевода. Ключ идемпотентности занимается в той же транзакции, что и перевод:
+     * дубль с другого инстанса ждёт на уникальном индексе и после коммита получает готовый результат.
+     */
+    private TransactionDto transferOnce(TransferRequest request, Long userId,
+                                        String idempotencyKey, String requestHash) {
+        if (idempotencyKey != null && idempotencyKeyRepository.claim(userId, idempotencyKey, requestHash) == 0) {
+            return findCompleted(userId, idempotencyKey, requestHash)
+                    .orElseThrow(() -> new IdempotencyKeyConflictException("Ключ идемпотентности занят, но перевод не найден"));
+        }
+
+        TransactionDto result = SQL_MODE.equals(transferMode) ? transferInSql(request) : transfer(request);
+        if (idempotencyKey != null) {
+            idempotencyKeyRepository.complete(userId, idempotencyKey, result.getId());
+        }
+        return result;
+    }
+
+    private Optional<TransactionDto> findCompleted(Long userId, String idempotencyKey, String requestHash) {
+        return idempotencyKeyRepository.findByUserIdAndIdempotencyKey(userId, idempotencyKey)
+                .map(stored -> {
+                    if (!stored.getRequestHash().equals(requestHash)) {
+                        throw new IdempotencyKeyConflictException("Ключ идемпотентности уже использован для другого запроса");
+                    }
+                    return transactionRepository.findById(stored.getTransactionId())
+                            .map(transactionMapper::toDto)
+                            .orElseThrow(() -> new NoSuchElementException("Транзакция не найдена"));
+                });
+    }
+
+    private void validate(TransferRequest request) {
+        Set<ConstraintViolation<TransferRequest>> violations = validator.validate(request, Default.class, ValidTransactionRequest.CardChecks.class);
+        if (!violations.isEmpty()) {
+            throw new ConstraintViolationException(violations);
+        }
+    }
+
+    private static String requestHash(TransferRequest request) {
+        String canonical = request.getFromCardId() + "|" + request.getToCardId() + "|"
+                + (request.getAmount() == null ? "" : request.getAmount().stripTrailingZeros().toPlainString()) + "|"
+                + Objects.toString(request.getDescription(), "");
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                    .digest(canonical.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    }
+
+    /**
+     * Перевод одним запросом к БД: все проверки выполняются условиями UPDATE, поэтому их не обойти
+     * параллельным изменением карты между валидацией и списанием.
+     */
+    private TransactionDto transferInSql(TransferRequest request) {
+        Long userId = userUtil.getCurrentUserId();
+        TransactionRepo.TransferResult result = transactionRepository.transfer(request.getFromCardId(),
+                        request.getToCardId(), userId, request.getAmount(), transactionMapper.describe(request))
+                .orElseThrow(() -> new IllegalArgumentException(
+                        "Перевод отклонён: карта не найдена, неактивна, не принадлежит пользователю или недостаточно средств"));
 
-        Card toCard = cardRepository.findById(request.getToCardId())
-                .orElseThrow(() -> new NoSuchElementException("Карта получателя не найдена"));
+        log.info("Перевод пользователя {} с карты {} на карту {} на сумму {} выполнен. ID транзакции: {}",
+                userId, request.getFromCardId(), request.getToCardId(), request.getAmount(), result.getId());
+        return transactionMapper.toDto(result, request);
+    }
+
+    private TransactionDto transfer(TransferRequest request) {
+        Map<Long, Card> cards = cardRepository.findAllByIdForUpdate(List.of(request.getFromCardId(), request.getToCardId()))
+                .stream()
+                .collect(Collectors.toMap(Card::getId, Function.identity()));
+
+        Card fromCard = cards.get(request.getFromCardId());
+        if (fromCard == null) {
+            throw new NoSuchElementException("Карта отправителя не найдена");
+        }
+        Card toCard = cards.get(request.getToCardId());
+        if (toCard == null) {
+            throw new NoSuchElementException("Карта получателя не найдена");
+        }
+        Long userId = userUtil.getCurrentUserId();
+        checkLockedCard(fromCard, userId, "отправителя");
+        checkLockedCard(toCard, userId, "получателя");
 
         try {
-            Transaction transaction = transactionMapper.toEntity(fromCard, toCard, request);
+            Transaction transaction = transactionMapper.toEntity(toCard, fromCard, request);
 
             if (!request.getFromCardId().equals(request.getToCardId())) {
-                cardService.deductBalance(request.getFromCardId(), request.getAmount());
+                if (fromCard.getBalance().compareTo(request.getAmount()) < 0) {
+                    throw new IllegalArgumentException("Недостаточно средств на карте отправителя");
+                }
+                fromCard.setBalance(fromCard.getBalance().subtract(request.getAmount()));
             }
-            cardService.addBalance(request.getToCardId(), request.getAmount());
+            toCard.setBalance(toCard.getBalance().add(request.getAmount()));
 
             log.info("Перевод пользователя {} с карты {} на карту {} на сумму {}",
                     fromCard.getOwner().getFullName(), request.getFromCardId(), request.getToCardId(), request.getAmount());
             Transaction savedTransaction = transactionRepository.save(transaction);
+            ledgerService.record(List.of(savedTransaction));
 
             log.info("Перевод выполнен успешно. ID транзакции: {}", savedTransaction.getId());
             return transactionMapper.toDto(savedTransaction);
 
+        } catch (ConcurrencyFailureException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Ошибка при выполнении перевода: {}", e.getMessage(), e);
-            Transaction failedTransaction = transactionMapper
-                    .toEntityWithError(toCard,fromCard,request, e.getMessage());
-            transactionRepository.save(failedTransaction);
-
             throw new RuntimeException("Ошибка при выполнении перевода: " + e.getMessage());
         }
     }
 
+    /**
+     * Проверки {@link com.example.bankcards.validations.TransferValidator} по заблокированной карте:
+     * между валидацией и блокировкой карту могли заблокировать или передать другому владельцу.
+     */
+    private static void checkLockedCard(Card card, Long userId, String cardRole) {
+        if (!Objects.equals(card.getOwner().getId(), userId)) {
+            throw new IllegalArgumentException("Карта " + cardRole + " не принадлежит пользователю");
+        }
+        if (CardStatus.EXPIRED.name().equals(card.getStatus())) {
+            throw new IllegalArgumentException("Срок действия карты " + cardRole + " истек");
+        }
+        if (!CardStatus.ACTIVE.name().equals(card.getStatus())) {
+            throw new IllegalArgumentException("Карта " + cardRole + " заблокирована");
+        }
+    }
+
     @Transactional(readOnly = true)
     public Page<TransactionDto> getUserTransactions(Long userId, Long cardId, Pageable pageable) {
         log.info("Получение транзакций для пользователя {}, карта: {}", userId, cardId);
@@ -5,11 +5,15 @@ import com.example.bankcards.dto.users.UserDto;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.repositories.CardRepository;
 import com.example.bankcards.repositories.UserRepository;
+import com.example.bankcards.security.UserAccessChangedEvent;
+import com.example.bankcards.util.UserCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
@@ -20,11 +24,13 @@ import java.util.NoSuchElementException;
 @Slf4j
 @Service
 @RequiredArgsConstructor
-public class UserService implements UserDetailsService {
+public class UserService implements UserDetailsService, UserDetailsPasswordService {
 
     private final UserRepository repository;
     private final CardRepository cardRepository;
     private final UserMapper userMapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final UserCache userCache;
 
 
     @Transactional
@@ -60,8 +66,11 @@ public class UserService implements UserDetailsService {
                 .orElseThrow(() -> new NoSuchElementException("Пользователь с ID " + id + " не найден"));
 
         user.setEnabled(!user.getEnabled());
+        user.setTokenVersion(user.getTokenVersion() + 1);
 
         User updatedUser = repository.save(user);
+        eventPublisher.publishEvent(new UserAccessChangedEvent(
+                updatedUser.getId(), updatedUser.getTokenVersion(), updatedUser.getEnabled(), false));
         log.info("Статус пользователя {} изменен на: {}",
                 updatedUser.getFullName(), updatedUser.getEnabled() ? "активен" : "заблокирован");
 
@@ -81,14 +90,20 @@ public class UserService implements UserDetailsService {
         }
 
         repository.delete(user);
+        eventPublisher.publishEvent(new UserAccessChangedEvent(id, user.getTokenVersion() + 1, false, true));
         log.info("Пользователь {} успешно удален", user.getFullName());
     }
 
     public User getByPhoneNumber(String phoneNumber) {
-        return repository.findByPhoneNumber(phoneNumber)
+        return userCache.getByPhone(phoneNumber, repository::findByPhoneNumber)
                 .orElseThrow(() -> new UsernameNotFoundException("Пользователь не найден с номером: " + phoneNumber));
     }
 
+    public User getById(Long id) {
+        return userCache.getById(id, repository::findById)
+                .orElseThrow(() -> new UsernameNotFoundException("Пользователь с ID " + id + " не найден"));
+    }
+
     public UserDetailsService userDetailsService() {
         return this::getByPhoneNumber;
     }
@@ -96,7 +111,22 @@ public class UserService implements UserDetailsService {
 
     @Override
     public UserDetails loadUserByUsername(String phoneNumber) throws UsernameNotFoundException {
-        return repository.findByPhoneNumber(phoneNumber)
+        return userCache.getByPhone(phoneNumber, repository::findByPhoneNumber)
                 .orElseThrow(() -> new UsernameNotFoundException("Пользователь не найден"));
     }
-}
\ No newline at end of file
+
+    /**
+     * Вызывается Spring Security после успешного входа, если хэш пароля устарел
+     * (другой алгоритм или меньшая стоимость). Переданный пользователь может быть общим экземпляром из кэша,
+     * поэтому он не меняется: запись сбрасывается и возвращается свежая копия из БД.
+     */
+    @Override
+    public UserDetails updatePassword(UserDetails userDetails, String newPassword) {
+        Long id = ((User) userDetails).getId();
+        repository.updatePassword(id, newPassword);
+        userCache.evict(id);
+        log.info("Хэш пароля пользователя с ID {} пересчитан", id);
+
+        return getById(id);
+    }
+}
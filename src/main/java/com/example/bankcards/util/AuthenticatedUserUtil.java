@@ -1,6 +1,8 @@
 package com.example.bankcards.util;
 
 import com.example.bankcards.entity.User;
+import com.example.bankcards.repositories.UserRepository;
+import com.example.bankcards.security.JwtPrincipal;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.core.Authentication;
@@ -10,6 +12,8 @@ import org.springframework.stereotype.Component;
 @Component
 @RequiredArgsConstructor
 public class AuthenticatedUserUtil {
+    private final UserRepository userRepository;
+
     public String getCurrentUsername() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         if (authentication != null && authentication.isAuthenticated() &&
@@ -33,26 +37,34 @@ public class AuthenticatedUserUtil {
             return false;
         }
 
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        if (authentication != null && authentication.getPrincipal() instanceof User user) {
-            return cardOwnerId.equals(user.getId());
-        }
-        return false;
+        return cardOwnerId.equals(getCurrentUserId());
     }
 
     public Long getCurrentUserId() {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        if (auth != null && auth.getPrincipal() instanceof User user) {
+        if (auth == null) {
+            return null;
+        }
+        if (auth.getPrincipal() instanceof User user) {
             return user.getId();
         }
+        if (auth.getPrincipal() instanceof JwtPrincipal principal) {
+            return principal.getId();
+        }
         return null;
     }
 
+    /**
+     * Для principal из токена возвращается ссылка без загрузки: её достаточно для связей вроде {@code @CreatedBy}.
+     */
     public User getCurrentUser() {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
         if (auth != null && auth.getPrincipal() instanceof User user) {
             return user;
         }
+        if (auth != null && auth.getPrincipal() instanceof JwtPrincipal principal) {
+            return userRepository.getReferenceById(principal.getId());
+        }
         throw new AccessDeniedException("У вас нету доступа");
     }
 }
@@ -0,0 +1,298 @@
+package com.example.bankcards.util;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Потокобезопасный движок шифрования номеров карт.
+ * Ключи вычисляются один раз при создании, {@link Cipher} и {@link Mac} закреплены за потоком
+ * вместе с рабочими буферами, поэтому операция не создаёт ничего, кроме результата.
+ * <p>
+ * Новые значения шифруются AES-GCM в формате {@code v<версия>:<base64(iv || шифротекст || тег)>}.
+ * Значения без префикса — прежний AES-CBC на ключе {@code app.encryption.key}, они только читаются.
+ * Base64 не содержит {@code ':'}, поэтому версионным считается только значение вида {@code v<цифры>:},
+ * а прежние шифротексты, случайно начинающиеся с {@code v}, по-прежнему читаются как AES-CBC.
+ * <p>
+ * Открытый текст в буферах потока затирается сразу после использования.
+ */
+public final class CardCryptoEngine {
+    private static final String ALGORITHM = "AES";
+    private static final String LEGACY_TRANSFORMATION = "AES/CBC/PKCS5Padding";
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final String INDEX_KEY_CONTEXT = "card-number-blind-index:";
+    private static final String GCM_KEY_CONTEXT = "card-number-gcm:";
+    private static final int LEGACY_IV_LENGTH = 16;
+    private static final int BLOCK_SIZE = 16;
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_LENGTH = 16;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final SecretKey legacyKey;
+    private final Map<Integer, SecretKey> keys = new HashMap<>();
+    private final int activeVersion;
+    private final SecretKey activeKey;
+    private final byte[] activePrefix;
+    private final SecretKey indexKey;
+    private final SecureRandom secureRandom = new SecureRandom();
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(this::newScratch);
+
+    public CardCryptoEngine(String legacyKey, Map<Integer, String> versionedKeys, int activeVersion, String indexKey) {
+        if (legacyKey == null || legacyKey.trim().isEmpty()) {
+            throw new IllegalStateException("Ключ шифрования не настроен");
+        }
+        if (indexKey == null || indexKey.trim().isEmpty()) {
+            throw new IllegalStateException("Ключ индекса номеров карт не настроен");
+        }
+
+        byte[] keyBytes = sha256(legacyKey);
+        byte[] key = new byte[16];
+        System.arraycopy(keyBytes, 0, key, 0, 16);
+        this.legacyKey = new SecretKeySpec(key, ALGORITHM);
+
+        versionedKeys.forEach((version, secret) -> {
+            if (secret == null || secret.trim().isEmpty()) {
+                throw new IllegalStateException("Ключ шифрования версии " + version + " не настроен");
+            }
+            keys.put(version, new SecretKeySpec(sha256(GCM_KEY_CONTEXT + secret), ALGORITHM));
+        });
+        if (!keys.containsKey(activeVersion)) {
+            throw new IllegalStateException("Не найден ключ активной версии " + activeVersion);
+        }
+        this.activeVersion = activeVersion;
+        this.activeKey = keys.get(activeVersion);
+        this.activePrefix = ("v" + activeVersion + ":").getBytes(StandardCharsets.US_ASCII);
+        this.indexKey = new SecretKeySpec(sha256(INDEX_KEY_CONTEXT + indexKey), HMAC_ALGORITHM);
+    }
+
+    public int activeVersion() {
+        return activeVersion;
+    }
+
+    /**
+     * Зашифровано ли значение активным ключом. Всё остальное подлежит перешифрованию.
+     */
+    public boolean isCurrent(String storedText) {
+        if (storedText.length() <= activePrefix.length) {
+            return false;
+        }
+        for (int i = 0; i < activePrefix.length; i++) {
+            if (storedText.charAt(i) != activePrefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public String encrypt(String plainText) throws GeneralSecurityException {
+        Scratch s = scratch.get();
+        int textLength = s.putText(plainText);
+        int cipherLength = IV_LENGTH + textLength + TAG_LENGTH;
+        byte[] raw = s.sealed(cipherLength);
+
+        secureRandom.nextBytes(s.iv);
+        System.arraycopy(s.iv, 0, raw, 0, IV_LENGTH);
+        s.cipher.init(Cipher.ENCRYPT_MODE, activeKey, new GCMParameterSpec(TAG_LENGTH * 8, s.iv));
+        try {
+            s.cipher.doFinal(s.text, 0, textLength, raw, IV_LENGTH);
+        } finally {
+            Arrays.fill(s.text, 0, textLength, (byte) 0);
+        }
+
+        byte[] encoded = s.encoded(activePrefix.length + 4 * ((cipherLength + 2) / 3));
+        int encodedLength = Base64.getEncoder().encode(raw, encoded);
+        System.arraycopy(encoded, 0, encoded, activePrefix.length, encodedLength);
+        System.arraycopy(activePrefix, 0, encoded, 0, activePrefix.length);
+        return new String(encoded, 0, activePrefix.length + encodedLength, StandardCharsets.ISO_8859_1);
+    }
+
+    public String decrypt(String storedText) throws GeneralSecurityException {
+        int separator = versionSeparator(storedText);
+        if (separator < 0) {
+            return decryptLegacy(storedText);
+        }
+
+        SecretKey key = keys.get(Integer.parseInt(storedText, 1, separator, 10));
+        if (key == null) {
+            throw new IllegalStateException("Неизвестная версия ключа шифрования: " + storedText.substring(0, separator));
+        }
+
+        Scratch s = scratch.get();
+        int rawLength = decode(storedText, separator + 1, s);
+        if (rawLength < IV_LENGTH + TAG_LENGTH) {
+            throw new IllegalArgumentException("Недостаточная длина зашифрованных данных");
+        }
+
+        s.cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH * 8, s.raw, 0, IV_LENGTH));
+        byte[] text = s.text(rawLength);
+        try {
+            int textLength = s.cipher.doFinal(s.raw, IV_LENGTH, rawLength - IV_LENGTH, text, 0);
+            return new String(text, 0, textLength, StandardCharsets.UTF_8);
+        } finally {
+            Arrays.fill(text, 0, rawLength, (byte) 0);
+        }
+    }
+
+    public String hash(String cardNumber) {
+        Scratch s = scratch.get();
+        byte[] text = s.text(cardNumber.length());
+        int length = 0;
+        for (int i = 0; i < cardNumber.length(); i++) {
+            char c = cardNumber.charAt(i);
+            if (c >= 0x80) {
+                Arrays.fill(text, 0, length, (byte) 0);
+                return toHex(s.mac.doFinal(cardNumber.replaceAll("\\s", "").getBytes(StandardCharsets.UTF_8)));
+            }
+            if (!Character.isWhitespace(c)) {
+                text[length++] = (byte) c;
+            }
+        }
+
+        s.mac.update(text, 0, length);
+        Arrays.fill(text, 0, length, (byte) 0);
+        return toHex(s.mac.doFinal());
+    }
+
+    /**
+     * Позиция {@code ':'} в префиксе {@code v<цифры>:} или {@code -1}, если значение в прежнем формате.
+     */
+    private static int versionSeparator(String storedText) {
+        if (storedText.length() < 3 || storedText.charAt(0) != 'v') {
+            return -1;
+        }
+        int i = 1;
+        while (i < storedText.length() && storedText.charAt(i) >= '0' && storedText.charAt(i) <= '9') {
+            i++;
+        }
+        return i > 1 && i < storedText.length() && storedText.charAt(i) == ':' ? i : -1;
+    }
+
+    private String decryptLegacy(String encryptedText) throws GeneralSecurityException {
+        Scratch s = scratch.get();
+        int rawLength = decode(encryptedText, 0, s);
+        if (rawLength < LEGACY_IV_LENGTH + BLOCK_SIZE) {
+            throw new IllegalArgumentException("Недостаточная длина зашифрованных данных");
+        }
+
+        s.legacyCipher.init(Cipher.DECRYPT_MODE, legacyKey, new IvParameterSpec(s.raw, 0, LEGACY_IV_LENGTH));
+        byte[] text = s.text(rawLength - LEGACY_IV_LENGTH);
+        try {
+            int textLength = s.legacyCipher.doFinal(s.raw, LEGACY_IV_LENGTH, rawLength - LEGACY_IV_LENGTH, text, 0);
+            return new String(text, 0, textLength, StandardCharsets.UTF_8);
+        } finally {
+            Arrays.fill(text, 0, rawLength - LEGACY_IV_LENGTH, (byte) 0);
+        }
+    }
+
+    /**
+     * Декодирует Base64 начиная с {@code offset} в {@link Scratch#raw} и возвращает длину результата.
+     */
+    private static int decode(String value, int offset, Scratch s) {
+        int encodedLength = value.length() - offset;
+        byte[] encoded = s.received(encodedLength);
+        for (int i = 0; i < encodedLength; i++) {
+            char c = value.charAt(offset + i);
+            if (c >= 0x80) {
+                throw new IllegalArgumentException("Недопустимый символ в зашифрованных данных");
+            }
+            encoded[i] = (byte) c;
+        }
+        return Base64.getDecoder().decode(encoded, s.raw(encodedLength / 4 * 3));
+    }
+
+    private static String toHex(byte[] hash) {
+        char[] hex = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            hex[i * 2] = HEX[(hash[i] >> 4) & 0x0f];
+            hex[i * 2 + 1] = HEX[hash[i] & 0x0f];
+        }
+        return new String(hex);
+    }
+
+    private Scratch newScratch() {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(indexKey);
+            return new Scratch(Cipher.getInstance(TRANSFORMATION), Cipher.getInstance(LEGACY_TRANSFORMATION), mac);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Не удалось инициализировать шифрование номеров карт", e);
+        }
+    }
+
+    private static byte[] sha256(String value) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Ошибка при генерации ключа", e);
+        }
+    }
+
+    private static final class Scratch {
+        private final Cipher cipher;
+        private final Cipher legacyCipher;
+        private final Mac mac;
+        private final byte[] iv = new byte[IV_LENGTH];
+        private byte[] text = new byte[32];
+        private byte[] raw = new byte[64];
+        private byte[] encoded = new byte[88];
+        private byte[] sealed = new byte[0];
+        private byte[] received = new byte[0];
+
+        private Scratch(Cipher cipher, Cipher legacyCipher, Mac mac) {
+            this.cipher = cipher;
+            this.legacyCipher = legacyCipher;
+            this.mac = mac;
+        }
+
+        private int putText(String value) {
+            byte[] bytes = text(value.length() * 3);
+            int length = 0;
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c >= 0x80) {
+                    byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+                    System.arraycopy(utf8, 0, bytes, 0, utf8.length);
+                    return utf8.length;
+                }
+                bytes[length++] = (byte) c;
+            }
+            return length;
+        }
+
+        private byte[] text(int size) {
+            return text.length >= size ? text : (text = new byte[size]);
+        }
+
+        private byte[] raw(int size) {
+            return raw.length >= size ? raw : (raw = new byte[size]);
+        }
+
+        private byte[] encoded(int size) {
+            return encoded.length >= size ? encoded : (encoded = new byte[size]);
+        }
+
+        /**
+         * {@link Base64} обрабатывает исходный массив целиком, поэтому входные буферы
+         * держатся точного размера и пересоздаются только при смене длины.
+         */
+        private byte[] sealed(int size) {
+            return sealed.length == size ? sealed : (sealed = new byte[size]);
+        }
+
+        private byte[] received(int size) {
+            return received.length == size ? received : (received = new byte[size]);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.bankcards.util;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+
+/**
+ * Выдаёт номера карт без проверок уникальности в БД.
+ * <p>
+ * Порядковый номер берётся из последовательности {@code card_number_seq} блоками по {@link #BLOCK_SIZE}
+ * значений (совпадает с её {@code INCREMENT BY}), поэтому обращение к БД происходит один раз на блок.
+ * Номер счёта — образ порядкового номера при ключевой перестановке (сеть Фейстеля на 38 битах с обходом цикла до диапазона 10^11),
+ * так что разные порядковые номера всегда дают разные номера карт, а сами номера не идут подряд.
+ * <p>
+ * Ключ перестановки {@code app.card-number.permutation-key} отдельный от ключей шифрования и не должен
+ * меняться никогда: с другим ключом новые порядковые номера отобразятся в номера, которые уже могли быть выданы.
+ */
+@Component
+public class CardNumberAllocator {
+    private static final String PREFIX = "4000";
+    private static final long ACCOUNT_RANGE = 100_000_000_000L;
+    private static final int HALF_BITS = 19;
+    private static final long HALF_MASK = (1L << HALF_BITS) - 1;
+    private static final int ROUNDS = 6;
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final String KEY_CONTEXT = "card-number-permutation:";
+    private static final int BLOCK_SIZE = 50;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ThreadLocal<Mac> macs;
+
+    private long next;
+    private long limit;
+
+    public CardNumberAllocator(JdbcTemplate jdbcTemplate,
+                               @Value("${app.card-number.permutation-key}") String permutationKey) {
+        if (permutationKey == null || permutationKey.trim().isEmpty()) {
+            throw new IllegalStateException("Ключ перестановки номеров карт не настроен");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        SecretKeySpec key = new SecretKeySpec(sha256(KEY_CONTEXT + permutationKey), HMAC_ALGORITHM);
+        this.macs = ThreadLocal.withInitial(() -> newMac(key));
+    }
+
+    public String allocate() {
+        long account = permute(nextSequenceValue());
+
+        char[] digits = new char[16];
+        PREFIX.getChars(0, PREFIX.length(), digits, 0);
+        for (int i = 14; i >= PREFIX.length(); i--) {
+            digits[i] = (char) ('0' + account % 10);
+            account /= 10;
+        }
+        digits[15] = (char) ('0' + luhnCheckDigit(digits, 15));
+        return new String(digits);
+    }
+
+    /**
+     * Биекция на [0, 10^11): шифрование Фейстеля на 38 битах повторяется, пока результат
+     * не попадёт в диапазон. Вход из диапазона гарантирует завершение обхода.
+     */
+    private long permute(long value) {
+        if (value < 0 || value >= ACCOUNT_RANGE) {
+            throw new IllegalStateException("Исчерпан диапазон номеров карт");
+        }
+        long result = value;
+        do {
+            result = feistel(result);
+        } while (result >= ACCOUNT_RANGE);
+        return result;
+    }
+
+    private long feistel(long value) {
+        long left = value >>> HALF_BITS;
+        long right = value & HALF_MASK;
+        Mac mac = macs.get();
+        for (int round = 0; round < ROUNDS; round++) {
+            long mixed = left ^ roundFunction(mac, round, right);
+            left = right;
+            right = mixed;
+        }
+        return (left << HALF_BITS) | right;
+    }
+
+    private static long roundFunction(Mac mac, int round, long half) {
+        mac.update((byte) round);
+        mac.update((byte) (half >>> 16));
+        mac.update((byte) (half >>> 8));
+        mac.update((byte) half);
+        byte[] hash = mac.doFinal();
+        return (((hash[0] & 0xffL) << 16) | ((hash[1] & 0xffL) << 8) | (hash[2] & 0xffL)) & HALF_MASK;
+    }
+
+    private synchronized long nextSequenceValue() {
+        if (next >= limit) {
+            Long blockStart = jdbcTemplate.queryForObject("SELECT nextval('card_number_seq')", Long.class);
+            if (blockStart == null) {
+                throw new IllegalStateException("Последовательность номеров карт не вернула значение");
+            }
+            next = blockStart;
+            limit = blockStart + BLOCK_SIZE;
+        }
+        return next++;
+    }
+
+    private static int luhnCheckDigit(char[] digits, int length) {
+        int sum = 0;
+        boolean alternate = true;
+        for (int i = length - 1; i >= 0; i--) {
+            int digit = digits[i] - '0';
+            if (alternate) {
+                digit *= 2;
+                if (digit > 9) {
+                    digit -= 9;
+                }
+            }
+            sum += digit;
+            alternate = !alternate;
+        }
+        return (10 - (sum % 10)) % 10;
+    }
+
+    private static Mac newMac(SecretKeySpec key) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Не удалось инициализировать перестановку номеров карт", e);
+        }
+    }
+
+    private static byte[] sha256(String value) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Ошибка при генерации ключа", e);
+        }
+    }
+}
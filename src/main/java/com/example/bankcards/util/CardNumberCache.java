@@ -0,0 +1,129 @@
+package com.example.bankcards.util;
+
+import com.example.bankcards.entity.Card;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Кэш расшифрованных номеров карт по ID карты.
+ * Запись привязана к отпечатку шифротекста, поэтому перешифрованная карта не отдаст старое значение,
+ * а номер хранится в {@code char[]}, который затирается при вытеснении.
+ */
+@Slf4j
+@Component
+public class CardNumberCache {
+    private final EncryptionUtil encryptionUtil;
+    private final Cache<Long, Entry> cache;
+
+    public CardNumberCache(EncryptionUtil encryptionUtil,
+                           MeterRegistry meterRegistry,
+                           @Value("${app.encryption.cache.max-size:10000}") long maxSize,
+                           @Value("${app.encryption.cache.ttl:5m}") Duration ttl) {
+        this.encryptionUtil = encryptionUtil;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .executor(Runnable::run)
+                .removalListener((Long cardId, Entry entry, RemovalCause cause) -> {
+                    if (entry != null) {
+                        entry.wipe();
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "card_numbers");
+    }
+
+    public String reveal(Long cardId, String storedCardNumber) {
+        if (cardId == null) {
+            return encryptionUtil.revealCardNumber(storedCardNumber);
+        }
+
+        long fingerprint = fingerprint(storedCardNumber);
+        Entry entry = cache.getIfPresent(cardId);
+        if (entry != null && entry.fingerprint == fingerprint) {
+            String cardNumber = entry.reveal();
+            if (cardNumber != null) {
+                return cardNumber;
+            }
+        }
+
+        String cardNumber = encryptionUtil.revealCardNumber(storedCardNumber);
+        cache.put(cardId, new Entry(fingerprint, cardNumber.toCharArray()));
+        return cardNumber;
+    }
+
+    /**
+     * Заранее раскрывает номера всей страницы одной пачкой, чтобы маппинг каждой карты попал в кэш.
+     */
+    public void warm(List<Card> cards) {
+        List<Card> misses = cards.stream()
+                .filter(card -> card.getId() != null && !isCached(card))
+                .toList();
+        if (misses.isEmpty()) {
+            return;
+        }
+
+        try {
+            List<String> cardNumbers = encryptionUtil.revealCardNumbers(
+                    misses.stream().map(Card::getCardNumber).toList());
+            for (int i = 0; i < misses.size(); i++) {
+                Card card = misses.get(i);
+                cache.put(card.getId(), new Entry(fingerprint(card.getCardNumber()), cardNumbers.get(i).toCharArray()));
+            }
+        } catch (Exception e) {
+            log.warn("Не удалось заранее расшифровать номера {} карт: {}", misses.size(), e.getMessage());
+        }
+    }
+
+    public void evict(Long cardId) {
+        cache.invalidate(cardId);
+    }
+
+    private boolean isCached(Card card) {
+        Entry entry = cache.asMap().get(card.getId());
+        return entry != null && entry.fingerprint == fingerprint(card.getCardNumber());
+    }
+
+    /**
+     * FNV-1a по символам шифротекста: дешевле криптографического хэша и не раскрывает номер.
+     */
+    private static long fingerprint(String storedCardNumber) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < storedCardNumber.length(); i++) {
+            hash ^= storedCardNumber.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static final class Entry {
+        private final long fingerprint;
+        private final char[] cardNumber;
+        private boolean wiped;
+
+        private Entry(long fingerprint, char[] cardNumber) {
+            this.fingerprint = fingerprint;
+            this.cardNumber = cardNumber;
+        }
+
+        private synchronized String reveal() {
+            return wiped ? null : new String(cardNumber);
+        }
+
+        private synchronized void wipe() {
+            wiped = true;
+            Arrays.fill(cardNumber, '\0');
+        }
+    }
+}
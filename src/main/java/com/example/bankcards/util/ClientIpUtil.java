@@ -0,0 +1,30 @@
+package com.example.bankcards.util;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.util.StringUtils;
+
+/**
+ * Определение IP клиента с учётом заголовков обратного прокси для метаданных сессии и отпечатка устройства.
+ * Заголовки здесь не проверяются и подделываются клиентом, поэтому для лимитов и других проверок безопасности
+ * используется {@code request.getRemoteAddr()}.
+ */
+public final class ClientIpUtil {
+
+    private ClientIpUtil() {
+    }
+
+    public static String getClientIpAddress(HttpServletRequest request) {
+        String xForwardedFor = request.getHeader("X-Forwarded-For");
+        if (StringUtils.hasText(xForwardedFor)) {
+            int comma = xForwardedFor.indexOf(',');
+            return (comma < 0 ? xForwardedFor : xForwardedFor.substring(0, comma)).trim();
+        }
+
+        String xRealIP = request.getHeader("X-Real-IP");
+        if (StringUtils.hasText(xRealIP)) {
+            return xRealIP;
+        }
+
+        return request.getRemoteAddr();
+    }
+}
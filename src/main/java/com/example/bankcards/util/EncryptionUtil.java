@@ -1,56 +1,43 @@
 package com.example.bankcards.util;
 
-import com.example.bankcards.repositories.CardRepository;
+import com.example.bankcards.config.EncryptionKeyRingProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
-import javax.crypto.Cipher;
-import javax.crypto.SecretKey;
-import javax.crypto.spec.IvParameterSpec;
-import javax.crypto.spec.SecretKeySpec;
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.security.SecureRandom;
-import java.util.Arrays;
-import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class EncryptionUtil {
 
-    private final CardRepository cardRepository;
-    private static final String ALGORITHM = "AES";
-    private static final String TRANSFORMATION = "AES/CBC/PKCS5Padding";
-    private static final int IV_LENGTH = 16;
+    private final MeterRegistry meterRegistry;
+    private final EncryptionKeyRingProperties keyRing;
+    private volatile CardCryptoEngine engine;
+    private volatile ForkJoinPool batchPool;
 
     @Value("${app.encryption.key}")
     private String encryptionKey;
 
-    public String encryptCardNumber(String cardNumber) {
-        try {
-            log.debug("Начинаем шифрование номера карты");
-
-            SecretKey secretKey = generateKey();
-            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
-
-            byte[] iv = new byte[IV_LENGTH];
-            new SecureRandom().nextBytes(iv);
-            IvParameterSpec ivSpec = new IvParameterSpec(iv);
-
-            cipher.init(Cipher.ENCRYPT_MODE, secretKey, ivSpec);
-            byte[] encryptedBytes = cipher.doFinal(cardNumber.getBytes(StandardCharsets.UTF_8));
+    @Value("${app.encryption.index-key:${app.encryption.key}}")
+    private String indexKey;
 
-            byte[] encryptedWithIv = new byte[IV_LENGTH + encryptedBytes.length];
-            System.arraycopy(iv, 0, encryptedWithIv, 0, IV_LENGTH);
-            System.arraycopy(encryptedBytes, 0, encryptedWithIv, IV_LENGTH, encryptedBytes.length);
+    @Value("${app.encryption.batch.threshold:64}")
+    private int batchThreshold;
 
-            String result = Base64.getEncoder().encodeToString(encryptedWithIv);
-            log.debug("Номер карты успешно зашифрован, длина результата: {}", result.length());
+    @Value("${app.encryption.batch.parallelism:0}")
+    private int batchParallelism;
 
-            return result;
+    public String encryptCardNumber(String cardNumber) {
+        try {
+            return engine().encrypt(cardNumber);
         } catch (Exception e) {
             log.error("Ошибка при шифровании номера карты: {}", e.getMessage(), e);
             throw new RuntimeException("Ошибка при шифровании номера карты", e);
@@ -59,32 +46,65 @@ public class EncryptionUtil {
 
     public String decryptCardNumber(String encryptedCardNumber) {
         try {
-            log.debug("Начинаем расшифровку номера карты");
-
-            SecretKey secretKey = generateKey();
-            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
-
-            byte[] encryptedWithIv = Base64.getDecoder().decode(encryptedCardNumber);
-
-            if (encryptedWithIv.length < IV_LENGTH) {
-                throw new IllegalArgumentException("Недостаточная длина зашифрованных данных");
-            }
+            return engine().decrypt(encryptedCardNumber);
+        } catch (Exception e) {
+            log.error("Ошибка при расшифровке номера карты: {}", e.getMessage(), e);
+            throw new RuntimeException("Ошибка при расшифровке номера карты", e);
+        }
+    }
 
-            byte[] iv = Arrays.copyOfRange(encryptedWithIv, 0, IV_LENGTH);
-            IvParameterSpec ivSpec = new IvParameterSpec(iv);
+    /**
+     * Возвращает номер карты в открытом виде. Строки, записанные до шифрования,
+     * хранят номер как есть и возвращаются без обращения к AES.
+     */
+    public String revealCardNumber(String storedCardNumber) {
+        if (isPlainCardNumber(storedCardNumber)) {
+            return storedCardNumber;
+        }
+        return decryptCardNumber(storedCardNumber);
+    }
 
-            byte[] encryptedBytes = Arrays.copyOfRange(encryptedWithIv, IV_LENGTH, encryptedWithIv.length);
+    /**
+     * Нужно ли перешифровать сохранённое значение активным ключом.
+     */
+    public boolean needsReencryption(String storedCardNumber) {
+        return isPlainCardNumber(storedCardNumber) || !engine().isCurrent(storedCardNumber);
+    }
 
-            cipher.init(Cipher.DECRYPT_MODE, secretKey, ivSpec);
-            byte[] decryptedBytes = cipher.doFinal(encryptedBytes);
+    public int activeKeyVersion() {
+        return engine().activeVersion();
+    }
 
-            String result = new String(decryptedBytes, StandardCharsets.UTF_8);
-            log.debug("Номер карты успешно расшифрован");
+    /**
+     * Раскрывает номера пачкой, сохраняя порядок. Начиная с {@code app.encryption.batch.threshold}
+     * элементов работа делится между потоками отдельного ограниченного пула.
+     */
+    public List<String> revealCardNumbers(List<String> storedCardNumbers) {
+        boolean parallel = storedCardNumbers.size() >= batchThreshold;
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            if (!parallel) {
+                return storedCardNumbers.stream().map(this::revealCardNumber).toList();
+            }
+            return batchPool().submit(() -> storedCardNumbers.parallelStream()
+                    .map(this::revealCardNumber)
+                    .toList()).join();
+        } finally {
+            sample.stop(Timer.builder("card_numbers.decrypt.batch")
+                    .tag("mode", parallel ? "parallel" : "sequential")
+                    .register(meterRegistry));
+        }
+    }
 
-            return result;
+    public String hashCardNumber(String cardNumber) {
+        if (cardNumber == null) {
+            throw new IllegalArgumentException("Номер карты не указан");
+        }
+        try {
+            return engine().hash(cardNumber);
         } catch (Exception e) {
-            log.error("Ошибка при расшифровке номера карты: {}", e.getMessage(), e);
-            throw new RuntimeException("Ошибка при расшифровке номера карты", e);
+            log.error("Ошибка при вычислении индекса номера карты: {}", e.getMessage(), e);
+            throw new RuntimeException("Ошибка при вычислении индекса номера карты", e);
         }
     }
 
@@ -98,54 +118,23 @@ public class EncryptionUtil {
             return "****";
         }
 
-        String lastFour = cleanNumber.substring(cleanNumber.length() - 4);
-        return "**** **** **** " + lastFour;
+        return maskLast4(cleanNumber.substring(cleanNumber.length() - 4));
     }
 
-    public String generateCardNumber() {
-        SecureRandom random = new SecureRandom();
-        String cardNumber;
-        int attempts = 0;
-        final int maxAttempts = 100; // Предотвращаем бесконечный цикл
-
-        do {
-            if (attempts++ > maxAttempts) {
-                throw new RuntimeException("Не удалось сгенерировать уникальный номер карты за " + maxAttempts + " попыток");
-            }
-
-            StringBuilder cardNumberBuilder = new StringBuilder();
-            cardNumberBuilder.append("4000");
-
-            for (int i = 0; i < 8; i++) {
-                cardNumberBuilder.append(random.nextInt(10));
-            }
-
-            for (int i = 0; i < 3; i++) {
-                cardNumberBuilder.append(random.nextInt(10));
-            }
-
-            int checkDigit = calculateLuhnCheckDigit(cardNumberBuilder.toString());
-            cardNumberBuilder.append(checkDigit);
-
-            cardNumber = cardNumberBuilder.toString();
-
-            if (!isValidCardNumber(cardNumber)) {
-                log.debug("Сгенерированный номер карты невалидный, повторяем генерацию");
-                continue;
-            }
-
-            String encryptedCardNumber = encryptCardNumber(cardNumber);
-
-            if (!cardRepository.existsByCardNumber(encryptedCardNumber)) {
-                log.debug("Сгенерирован уникальный номер карты за {} попыток", attempts);
-                break;
-            }
-
-            log.debug("Сгенерированный номер карты уже существует, повторяем генерацию");
+    public String maskLast4(String panLast4) {
+        if (panLast4 == null || panLast4.length() != 4) {
+            return "****";
+        }
+        return "**** **** **** " + panLast4;
+    }
 
-        } while (true);
+    public String panLast4(String cardNumber) {
+        String cleanNumber = cardNumber.replaceAll("\\s", "");
+        return cleanNumber.substring(cleanNumber.length() - 4);
+    }
 
-        return cardNumber;
+    public String panBin(String cardNumber) {
+        return cardNumber.replaceAll("\\s", "").substring(0, 6);
     }
 
     public boolean isValidCardNumber(String cardNumber) {
@@ -162,31 +151,59 @@ public class EncryptionUtil {
         return isLuhnValid(cleanNumber);
     }
 
-    private SecretKey generateKey() {
-        try {
-            if (encryptionKey == null || encryptionKey.trim().isEmpty()) {
-                throw new IllegalStateException("Ключ шифрования не настроен");
+    private boolean isPlainCardNumber(String cardNumber) {
+        int length = cardNumber.length();
+        if (length < 13 || length > 19) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = cardNumber.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
             }
-
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] keyBytes = digest.digest(encryptionKey.getBytes(StandardCharsets.UTF_8));
-            byte[] key = new byte[16];
-            System.arraycopy(keyBytes, 0, key, 0, 16);
-
-            return new SecretKeySpec(key, ALGORITHM);
-        } catch (Exception e) {
-            log.error("Ошибка при генерации ключа шифрования: {}", e.getMessage(), e);
-            throw new RuntimeException("Ошибка при генерации ключа", e);
         }
+        return true;
     }
 
-    private int calculateLuhnCheckDigit(String number) {
-        int sum = 0;
-        boolean alternate = true;
+    private ForkJoinPool batchPool() {
+        ForkJoinPool current = batchPool;
+        if (current == null) {
+            synchronized (this) {
+                current = batchPool;
+                if (current == null) {
+                    int parallelism = batchParallelism > 0
+                            ? batchParallelism
+                            : Runtime.getRuntime().availableProcessors();
+                    current = new ForkJoinPool(parallelism);
+                    batchPool = current;
+                }
+            }
+        }
+        return current;
+    }
 
-        sum = getSum(number, sum, alternate);
+    @PreDestroy
+    void shutdownBatchPool() {
+        if (batchPool != null) {
+            batchPool.shutdown();
+        }
+    }
 
-        return (10 - (sum % 10)) % 10;
+    private CardCryptoEngine engine() {
+        CardCryptoEngine current = engine;
+        if (current == null) {
+            synchronized (this) {
+                current = engine;
+                if (current == null) {
+                    Map<Integer, String> keys = keyRing.getKeys().isEmpty()
+                            ? Map.of(keyRing.getActiveVersion(), encryptionKey)
+                            : keyRing.getKeys();
+                    current = new CardCryptoEngine(encryptionKey, keys, keyRing.getActiveVersion(), indexKey);
+                    engine = current;
+                }
+            }
+        }
+        return current;
     }
 
     private boolean isLuhnValid(String number) {
@@ -0,0 +1,62 @@
+package com.example.bankcards.util;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket в форме GCRA: на каждый ключ хранится одно «теоретическое время прибытия»
+ * в {@link AtomicLong}, которое продвигается CAS-ом. Блокировок нет, а проверка существующего
+ * ключа ничего не создаёт.
+ * <p>
+ * Ключи живут в ограниченном кэше и удаляются после простоя дольше полного восстановления корзины.
+ */
+public final class GcraRateLimiter {
+    private final long emissionIntervalNanos;
+    private final long burstToleranceNanos;
+    private final Cache<String, AtomicLong> buckets;
+
+    /**
+     * @param limit  сколько запросов восстанавливается за {@code period}
+     * @param period период восстановления
+     * @param burst  сколько запросов можно сделать подряд с полной корзиной
+     */
+    public GcraRateLimiter(int limit, Duration period, int burst, long maxKeys) {
+        if (limit <= 0 || burst <= 0) {
+            throw new IllegalArgumentException("Лимит и размер корзины должны быть положительными");
+        }
+        this.emissionIntervalNanos = period.toNanos() / limit;
+        this.burstToleranceNanos = emissionIntervalNanos * (burst - 1);
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterAccess(Duration.ofNanos(emissionIntervalNanos + burstToleranceNanos))
+                .build();
+    }
+
+    /**
+     * Пытается списать один запрос с корзины ключа.
+     *
+     * @return 0, если запрос разрешён, иначе через сколько наносекунд его можно повторить
+     */
+    public long tryAcquire(String key) {
+        AtomicLong arrival = buckets.get(key, GcraRateLimiter::newBucket);
+        while (true) {
+            long now = System.nanoTime();
+            long tat = arrival.get();
+            long start = Math.max(tat, now);
+            long waitNanos = start - burstToleranceNanos - now;
+            if (waitNanos > 0) {
+                return waitNanos;
+            }
+            if (arrival.compareAndSet(tat, start + emissionIntervalNanos)) {
+                return 0;
+            }
+        }
+    }
+
+    private static AtomicLong newBucket(String key) {
+        return new AtomicLong(System.nanoTime());
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.bankcards.util;
+
+import com.example.bankcards.dto.transactions.TransactionDto;
+import com.example.bankcards.exception.IdempotencyKeyConflictException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Локальный кэш результатов переводов по ключу идемпотентности.
+ * Параллельные дубли на одном инстансе ждут результата первого запроса, повторы в пределах TTL
+ * получают его без обращения к БД. Неудачный результат не сохраняется: ожидающий дубль выполняет запрос сам.
+ * Между инстансами дубли разводит уникальный индекс {@code idempotency_keys}.
+ */
+@Slf4j
+@Component
+public class IdempotencyCache {
+    private final Cache<String, Entry> cache;
+    private final Duration waitTimeout;
+
+    public IdempotencyCache(MeterRegistry meterRegistry,
+                            @Value("${app.transfer.idempotency.cache.max-size:10000}") long maxSize,
+                            @Value("${app.transfer.idempotency.cache.ttl:10m}") Duration ttl,
+                            @Value("${app.transfer.idempotency.wait-timeout:30s}") Duration waitTimeout) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.waitTimeout = waitTimeout;
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "idempotency_keys");
+    }
+
+    public TransactionDto execute(Long userId, String idempotencyKey, String requestHash,
+                                  Supplier<TransactionDto> action) {
+        String cacheKey = userId + ":" + idempotencyKey;
+        while (true) {
+            Entry own = new Entry(requestHash, new CompletableFuture<>());
+            Entry existing = cache.asMap().putIfAbsent(cacheKey, own);
+            if (existing == null) {
+                return run(cacheKey, own, action);
+            }
+
+            if (!existing.requestHash().equals(requestHash)) {
+                throw new IdempotencyKeyConflictException("Ключ идемпотентности уже использован для другого запроса");
+            }
+            try {
+                return existing.result().get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (ExecutionException e) {
+                log.debug("Запрос с ключом идемпотентности {} завершился ошибкой, выполняем повторно", idempotencyKey);
+            } catch (TimeoutException e) {
+                throw new IdempotencyKeyConflictException("Запрос с этим ключом идемпотентности ещё выполняется");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Ожидание результата запроса прервано");
+            }
+        }
+    }
+
+    private TransactionDto run(String cacheKey, Entry entry, Supplier<TransactionDto> action) {
+        try {
+            TransactionDto result = action.get();
+            entry.result().complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            cache.asMap().remove(cacheKey, entry);
+            entry.result().completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private record Entry(String requestHash, CompletableFuture<TransactionDto> result) {
+    }
+}
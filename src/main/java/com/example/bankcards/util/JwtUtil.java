@@ -1,12 +1,11 @@
 package com.example.bankcards.util;
 
-import com.example.bankcards.repositories.UserRepository;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
-import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
@@ -18,17 +17,30 @@ import java.util.Map;
 import java.util.function.Function;
 
 @Component
-@RequiredArgsConstructor
 public class JwtUtil {
-
-    @Value("${jwt.secret}")
-    private String secret;
-
-    private SecretKey getSigningKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(secret);
-        return Keys.hmacShaKeyFor(keyBytes);
+    public static final String USER_ID_CLAIM = "userId";
+    public static final String ROLE_CLAIM = "role";
+    public static final String VERSION_CLAIM = "ver";
+
+    private final SecretKey signingKey;
+    private final JwtParser parser;
+
+    public JwtUtil(@Value("${jwt.secret}") String secret) {
+        this.signingKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(secret));
+        this.parser = Jwts.parser()
+                .verifyWith(signingKey)
+                .build();
     }
 
+    /**
+     * Проверяет подпись и срок действия токена и возвращает его claims.
+     * Единственная точка разбора токена: остальные методы работают через неё.
+     *
+     * @throws JwtException если токен подделан, повреждён или истёк
+     */
+    public Claims parseToken(String token) {
+        return parser.parseSignedClaims(token).getPayload();
+    }
 
     public Date extractExpiration(String token) {
         return extractClaim(token, Claims::getExpiration);
@@ -39,15 +51,14 @@ public class JwtUtil {
         return claimsResolver.apply(claims);
     }
 
-
-    private Boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
-    }
-
     public String generateToken(UserDetails userDetails) {
         Map<String, Object> claims = new HashMap<>();
         if (userDetails instanceof com.example.bankcards.entity.User user) {
-            claims.put("userId", user.getId());
+            claims.put(USER_ID_CLAIM, user.getId());
+            if (user.getRole() != null) {
+                claims.put(ROLE_CLAIM, user.getRole().getName());
+            }
+            claims.put(VERSION_CLAIM, user.getTokenVersion());
         }
         long jwtExpiration = 5 * 24 * 60 * 60 * 1000L;
         return createToken(claims, userDetails.getUsername(), jwtExpiration);
@@ -55,37 +66,48 @@ public class JwtUtil {
 
     public Long extractUserId(String token) {
         try {
-            Claims claims = extractAllClaims(token);
-            Object userIdClaim = claims.get("userId");
-
-            if (userIdClaim instanceof Integer) {
-                return ((Integer) userIdClaim).longValue();
-            } else if (userIdClaim instanceof Long) {
-                return (Long) userIdClaim;
-            }
-            return null;
+            return extractUserId(extractAllClaims(token));
         } catch (JwtException | IllegalArgumentException e) {
             return null;
         }
     }
 
+    public Long extractUserId(Claims claims) {
+        return longClaim(claims, USER_ID_CLAIM);
+    }
+
+    /**
+     * Версия токенов пользователя на момент выпуска или {@code null} для токенов без неё.
+     */
+    public Long extractTokenVersion(Claims claims) {
+        return longClaim(claims, VERSION_CLAIM);
+    }
+
+    private static Long longClaim(Claims claims, String name) {
+        Object claim = claims.get(name);
+
+        if (claim instanceof Integer) {
+            return ((Integer) claim).longValue();
+        } else if (claim instanceof Long) {
+            return (Long) claim;
+        }
+        return null;
+    }
+
     private String createToken(Map<String, Object> claims, String subject, long expiration) {
         return Jwts.builder()
                 .claims(claims)
                 .subject(subject)
                 .issuedAt(new Date(System.currentTimeMillis()))
                 .expiration(new Date(System.currentTimeMillis() + expiration))
-                .signWith(getSigningKey())
+                .signWith(signingKey)
                 .compact();
     }
 
 
     public Boolean validateToken(String token) {
         try {
-            Jwts.parser()
-                    .verifyWith(getSigningKey())
-                    .build()
-                    .parseSignedClaims(token);
+            parseToken(token);
             return true;
         } catch (JwtException | IllegalArgumentException e) {
             return false;
@@ -102,11 +124,7 @@ public class JwtUtil {
 
     private Claims extractAllClaims(String token) {
         try {
-            return Jwts.parser()
-                    .verifyWith(getSigningKey())
-                    .build()
-                    .parseSignedClaims(token)
-                    .getPayload();
+            return parseToken(token);
         } catch (JwtException | IllegalArgumentException e) {
             throw new IllegalArgumentException("Invalid JWT token", e);
         }
@@ -114,12 +132,10 @@ public class JwtUtil {
 
     public Boolean validateToken(String token, UserDetails userDetails) {
         try {
-            final String username = extractUsername(token);
-            return username != null &&
-                   username.equals(userDetails.getUsername()) &&
-                   !isTokenExpired(token);
+            final String username = parseToken(token).getSubject();
+            return username != null && username.equals(userDetails.getUsername());
         } catch (Exception e) {
             return false;
         }
     }
-}
\ No newline at end of file
+}
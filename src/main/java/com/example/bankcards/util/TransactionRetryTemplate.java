@@ -0,0 +1,57 @@
+package com.example.bankcards.util;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Выполняет действие в отдельной транзакции и повторяет её при конфликте блокировок
+ * или ошибке сериализации ({@link ConcurrencyFailureException}) с экспоненциальной задержкой и полным джиттером.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TransactionRetryTemplate {
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.transfer.retry.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${app.transfer.retry.backoff-millis:20}")
+    private long backoffMillis;
+
+    @Value("${app.transfer.retry.max-backoff-millis:500}")
+    private long maxBackoffMillis;
+
+    public <T> T execute(String operation, TransactionCallback<T> action) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(action);
+            } catch (ConcurrencyFailureException e) {
+                if (attempt >= maxAttempts) {
+                    log.error("{} не выполнен после {} попыток: {}", operation, attempt, e.getMessage());
+                    throw e;
+                }
+                long backoff = backoffMillis(attempt);
+                log.warn("Конфликт: {}, попытка {} из {}, повтор через {} мс", operation, attempt, maxAttempts, backoff);
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private long backoffMillis(int attempt) {
+        long ceiling = Math.min(maxBackoffMillis, backoffMillis << Math.min(attempt - 1, 20));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+}
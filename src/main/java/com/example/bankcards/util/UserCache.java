@@ -0,0 +1,77 @@
+package com.example.bankcards.util;
+
+import com.example.bankcards.entity.User;
+import com.example.bankcards.security.UserAccessChangedEvent;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Кэш пользователей для аутентификации по номеру телефона с вторичным индексом по ID.
+ * Запись сбрасывается после коммита блокировки или удаления ({@link UserAccessChangedEvent}) и после
+ * пересчёта хэша пароля. Роль в приложении задаётся только при регистрации, поэтому изменения роли напрямую в БД
+ * и изменения, сделанные на других инстансах, ограничены TTL.
+ * <p>
+ * Пользователи хранятся отсоединёнными от контекста персистентности: ленивые связи вроде карт из кэша не читаются.
+ */
+@Slf4j
+@Component
+public class UserCache {
+    private final Cache<String, User> byPhone;
+    private final Cache<Long, User> byId;
+
+    public UserCache(MeterRegistry meterRegistry,
+                     @Value("${app.security.user-cache.max-size:10000}") long maxSize,
+                     @Value("${app.security.user-cache.ttl:5m}") Duration ttl) {
+        this.byPhone = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.byId = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, byPhone, "users");
+    }
+
+    public Optional<User> getByPhone(String phoneNumber, Function<String, Optional<User>> loader) {
+        User user = byPhone.get(phoneNumber, phone -> loader.apply(phone).orElse(null));
+        if (user != null) {
+            byId.put(user.getId(), user);
+        }
+        return Optional.ofNullable(user);
+    }
+
+    public Optional<User> getById(Long userId, Function<Long, Optional<User>> loader) {
+        User user = byId.get(userId, id -> loader.apply(id).orElse(null));
+        if (user != null) {
+            byPhone.put(user.getPhoneNumber(), user);
+        }
+        return Optional.ofNullable(user);
+    }
+
+    public void evict(Long userId) {
+        User user = byId.asMap().remove(userId);
+        if (user != null) {
+            byPhone.invalidate(user.getPhoneNumber());
+        } else {
+            byPhone.asMap().values().removeIf(cached -> userId.equals(cached.getId()));
+        }
+        log.debug("Пользователь {} удалён из кэша", userId);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserAccessChanged(UserAccessChangedEvent event) {
+        evict(event.userId());
+    }
+}
@@ -9,8 +9,13 @@ import jakarta.validation.ConstraintValidatorContext;
 import lombok.RequiredArgsConstructor;
 
 import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @RequiredArgsConstructor
 public class TransferValidator implements ConstraintValidator<ValidTransactionRequest, TransferRequest> {
@@ -31,10 +36,13 @@ public class TransferValidator implements ConstraintValidator<ValidTransactionRe
             isValid = false;
         }
 
-        Card fromCard = repository.findById(value.getFromCardId())
+        Map<Long, Card> cards = repository.findAllById(List.of(value.getFromCardId(), value.getToCardId())).stream()
+                .collect(Collectors.toMap(Card::getId, Function.identity()));
+
+        Card fromCard = Optional.ofNullable(cards.get(value.getFromCardId()))
                 .orElseThrow(() -> new NoSuchElementException("Карта отправителя не найдена"));
 
-        Card toCard = repository.findById(value.getToCardId())
+        Card toCard = Optional.ofNullable(cards.get(value.getToCardId()))
                 .orElseThrow(() -> new NoSuchElementException("Карта получателя не найдена"));
 
 
@@ -15,4 +15,11 @@ public @interface ValidTransactionRequest {
     Class<?>[] groups() default {};
 
     Class<? extends Payload>[] payload() default {};
+
+    /**
+     * Группа проверок по состоянию карт. {@code @Valid} на контроллере их не запускает:
+     * сервис проверяет их сам и только для нового перевода, а не для повтора по ключу идемпотентности.
+     */
+    interface CardChecks {
+    }
 }
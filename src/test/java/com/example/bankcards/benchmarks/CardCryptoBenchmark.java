@@ -0,0 +1,100 @@
+package com.example.bankcards.benchmarks;
+
+import com.example.bankcards.util.CardCryptoEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение прежнего пути шифрования (ключ, {@link Cipher} и {@link SecureRandom} на каждый вызов)
+ * с {@link CardCryptoEngine}. Запуск: {@code main}, распределение памяти показывает {@code gc.alloc.rate.norm}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CardCryptoBenchmark {
+    private static final String KEY = "cd0211c7721d48006aff56996fe13e33d2b4924672b3a6aa2d2bf7786bfa0fee";
+    private static final String CARD_NUMBER = "4000123456789012";
+
+    private CardCryptoEngine engine;
+    private String encrypted;
+    private String legacyEncrypted;
+
+    @Setup
+    public void setUp() throws Exception {
+        engine = new CardCryptoEngine(KEY, Map.of(1, KEY), 1, KEY);
+        encrypted = engine.encrypt(CARD_NUMBER);
+        legacyEncrypted = legacyEncrypt();
+    }
+
+    @Benchmark
+    public String legacyDecrypt() throws Exception {
+        Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+        byte[] encryptedWithIv = Base64.getDecoder().decode(legacyEncrypted);
+        byte[] iv = Arrays.copyOfRange(encryptedWithIv, 0, 16);
+        byte[] encryptedBytes = Arrays.copyOfRange(encryptedWithIv, 16, encryptedWithIv.length);
+        cipher.init(Cipher.DECRYPT_MODE, legacyKey(), new IvParameterSpec(iv));
+        return new String(cipher.doFinal(encryptedBytes), StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public String engineDecrypt() throws Exception {
+        return engine.decrypt(encrypted);
+    }
+
+    @Benchmark
+    public String legacyEncrypt() throws Exception {
+        Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+        byte[] iv = new byte[16];
+        new SecureRandom().nextBytes(iv);
+        cipher.init(Cipher.ENCRYPT_MODE, legacyKey(), new IvParameterSpec(iv));
+        byte[] encryptedBytes = cipher.doFinal(CARD_NUMBER.getBytes(StandardCharsets.UTF_8));
+        byte[] encryptedWithIv = new byte[16 + encryptedBytes.length];
+        System.arraycopy(iv, 0, encryptedWithIv, 0, 16);
+        System.arraycopy(encryptedBytes, 0, encryptedWithIv, 16, encryptedBytes.length);
+        return Base64.getEncoder().encodeToString(encryptedWithIv);
+    }
+
+    @Benchmark
+    public String engineEncrypt() throws Exception {
+        return engine.encrypt(CARD_NUMBER);
+    }
+
+    private static SecretKey legacyKey() throws Exception {
+        byte[] keyBytes = MessageDigest.getInstance("SHA-256").digest(KEY.getBytes(StandardCharsets.UTF_8));
+        return new SecretKeySpec(Arrays.copyOf(keyBytes, 16), "AES");
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CardCryptoBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -18,7 +18,6 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.*;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.data.domain.PageRequest;
 import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -27,11 +26,14 @@ import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
+import java.time.Instant;
 import java.util.*;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -64,6 +66,9 @@ class AuthenticationServiceTest {
     @Mock
     private UserDetailsService userDetailsService;
 
+    @Mock
+    private LoginThrottle loginThrottle;
+
     @InjectMocks
     private AuthenticationService authenticationService;
 
@@ -122,14 +127,6 @@ class AuthenticationServiceTest {
         return session;
     }
 
-    private RefreshSession createRandomRefreshSession(User user) {
-        return createValidRefreshSession(
-                user,
-                UUID.randomUUID(),
-                "fingerprint-" + System.currentTimeMillis()
-        );
-    }
-
     private RefreshSession createExpiredRefreshSession(User user, UUID token, String fingerprint) {
         RefreshSession session = createValidRefreshSession(user, token, fingerprint);
         session.setExpiresIn(System.currentTimeMillis() / 1000 - 3600);
@@ -142,8 +139,6 @@ class AuthenticationServiceTest {
         when(userService.userDetailsService()).thenReturn(userDetailsService);
         when(userDetailsService.loadUserByUsername("500123321")).thenReturn(testUser);
         when(jwtService.generateToken(testUser)).thenReturn("accessToken123");
-        when(refreshSessionRepository.findByUserOrderByCreatedAtAsc(eq(testUser), any(PageRequest.class)))
-                .thenReturn(Collections.emptyList());
         when(deviceFingerprintService.generateFingerprint(any(HttpServletRequest.class)))
                 .thenReturn("auto-generated-fingerprint-123");
 
@@ -161,49 +156,93 @@ class AuthenticationServiceTest {
     }
 
     @Test
-    @DisplayName("Должен удалить старые сессии при превышении лимита")
-    void shouldDeleteOldSessionsWhenLimitExceeded() {
-        List<RefreshSession> oldSessions = Arrays.asList(
-                createRandomRefreshSession(testUser),
-                createRandomRefreshSession(testUser),
-                createRandomRefreshSession(testUser),
-                createRandomRefreshSession(testUser),
-                createRandomRefreshSession(testUser)
-        );
-
+    @DisplayName("Должен оставить только последние сессии пользователя перед созданием новой")
+    void shouldTrimOldSessionsOnSignIn() {
         when(userService.userDetailsService()).thenReturn(userDetailsService);
         when(userDetailsService.loadUserByUsername("500123321")).thenReturn(testUser);
         when(jwtService.generateToken(testUser)).thenReturn("accessToken123");
-        when(refreshSessionRepository.findByUserOrderByCreatedAtAsc(eq(testUser), any(PageRequest.class)))
-                .thenReturn(oldSessions);
         when(deviceFingerprintService.generateFingerprint(any(HttpServletRequest.class)))
                 .thenReturn("auto-generated-fingerprint-123");
 
         authenticationService.signIn(signInRequest, mockResponse, mockRequest);
 
-        verify(refreshSessionRepository).deleteAll(oldSessions);
+        verify(refreshSessionRepository).deleteAllExceptNewest(testUser.getId(), 4);
+        verify(refreshSessionRepository).save(any(RefreshSession.class));
     }
 
     @Test
-    @DisplayName("Должен обновить refresh token")
+    @DisplayName("Должен обновить refresh token на месте одним запросом")
     void shouldRefreshToken() {
-        when(refreshSessionRepository.findByRefreshToken(testRefreshToken))
-                .thenReturn(Optional.of(testSession));
+        when(refreshSessionRepository.rotate(eq(testRefreshToken), any(UUID.class), eq("auto-generated-fingerprint"),
+                anyLong(), anyLong(), any(Instant.class)))
+                .thenReturn(Optional.of(testUser.getId()));
         when(deviceFingerprintService.generateFingerprint(any(HttpServletRequest.class)))
                 .thenReturn("auto-generated-fingerprint");
+        when(userService.getById(testUser.getId())).thenReturn(testUser);
         when(jwtService.generateToken(testUser)).thenReturn("newAccessToken123");
 
         String result = authenticationService.refreshToken(testRefreshToken, mockResponse, mockRequest);
 
         assertThat(result).isEqualTo("newAccessToken123");
-        verify(refreshSessionRepository).findByRefreshToken(testRefreshToken);
-        verify(refreshSessionRepository).save(any(RefreshSession.class));
-        verify(refreshSessionRepository).deleteByRefreshToken(testRefreshToken);
+        ArgumentCaptor<UUID> newToken = ArgumentCaptor.forClass(UUID.class);
+        verify(refreshSessionRepository).rotate(eq(testRefreshToken), newToken.capture(), eq("auto-generated-fingerprint"),
+                anyLong(), anyLong(), any(Instant.class));
+        verify(refreshSessionRepository, never()).save(any(RefreshSession.class));
         verify(deviceFingerprintService).generateFingerprint(mockRequest);
 
         Cookie[] cookies = mockResponse.getCookies();
         assertThat(cookies).hasSize(1);
         assertThat(cookies[0].getName()).isEqualTo("refreshToken");
+        assertThat(cookies[0].getValue()).isEqualTo(newToken.getValue().toString());
+    }
+
+    @Test
+    @DisplayName("Повторный refresh тем же токеном должен получить результат той же ротации")
+    void shouldShareRotationForRepeatedRefresh() {
+        when(refreshSessionRepository.rotate(eq(testRefreshToken), any(UUID.class), anyString(),
+                anyLong(), anyLong(), any(Instant.class)))
+                .thenReturn(Optional.of(testUser.getId()));
+        when(deviceFingerprintService.generateFingerprint(any(HttpServletRequest.class)))
+                .thenReturn("auto-generated-fingerprint");
+        when(userService.getById(testUser.getId())).thenReturn(testUser);
+        when(jwtService.generateToken(testUser)).thenReturn("newAccessToken123");
+
+        authenticationService.refreshToken(testRefreshToken, mockResponse, mockRequest);
+        MockHttpServletResponse secondResponse = new MockHttpServletResponse();
+        authenticationService.refreshToken(testRefreshToken, secondResponse, mockRequest);
+
+        verify(refreshSessionRepository, times(1)).rotate(any(), any(), any(), anyLong(), anyLong(), any());
+        assertThat(secondResponse.getCookies()[0].getValue()).isEqualTo(mockResponse.getCookies()[0].getValue());
+    }
+
+    @Test
+    @DisplayName("Должен отдать токен ротации, выполненной другим инстансом")
+    void shouldReuseRotationWonByAnotherNode() {
+        UUID winnerToken = UUID.randomUUID();
+        RefreshSession rotated = createValidRefreshSession(testUser, winnerToken, "auto-generated-fingerprint");
+        rotated.setPreviousToken(testRefreshToken);
+        when(refreshSessionRepository.findByPreviousTokenAndRotatedAtAfter(eq(testRefreshToken), any(Instant.class)))
+                .thenReturn(Optional.of(rotated));
+        when(deviceFingerprintService.generateFingerprint(any(HttpServletRequest.class)))
+                .thenReturn("auto-generated-fingerprint");
+        when(userService.getById(testUser.getId())).thenReturn(testUser);
+        when(jwtService.generateToken(testUser)).thenReturn("newAccessToken123");
+
+        authenticationService.refreshToken(testRefreshToken, mockResponse, mockRequest);
+
+        assertThat(mockResponse.getCookies()[0].getValue()).isEqualTo(winnerToken.toString());
+    }
+
+    @Test
+    @DisplayName("Должен отклонить refresh с чужим fingerprint")
+    void shouldRejectFingerprintMismatch() {
+        when(refreshSessionRepository.findByRefreshToken(testRefreshToken)).thenReturn(Optional.of(testSession));
+        when(deviceFingerprintService.generateFingerprint(any(HttpServletRequest.class)))
+                .thenReturn("other-device");
+
+        assertThatThrownBy(() -> authenticationService.refreshToken(testRefreshToken, mockResponse, mockRequest))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Fingerprint mismatch");
     }
 
     @Test
@@ -264,8 +303,6 @@ class AuthenticationServiceTest {
         when(userService.userDetailsService()).thenReturn(userDetailsService);
         when(userDetailsService.loadUserByUsername(anyString())).thenReturn(testUser);
         when(jwtService.generateToken(any())).thenReturn("accessToken");
-        when(refreshSessionRepository.findByUserOrderByCreatedAtAsc(any(), any()))
-                .thenReturn(Collections.emptyList());
         when(deviceFingerprintService.generateFingerprint(any(HttpServletRequest.class)))
                 .thenReturn("auto-generated-fingerprint-from-headers");
 
@@ -290,8 +327,6 @@ class AuthenticationServiceTest {
         when(userService.userDetailsService()).thenReturn(userDetailsService);
         when(userDetailsService.loadUserByUsername(anyString())).thenReturn(testUser);
         when(jwtService.generateToken(any())).thenReturn("accessToken");
-        when(refreshSessionRepository.findByUserOrderByCreatedAtAsc(any(), any()))
-                .thenReturn(Collections.emptyList());
         when(deviceFingerprintService.generateFingerprint(any(HttpServletRequest.class)))
                 .thenReturn("fingerprint-for-cookie-test");
 
@@ -335,8 +370,6 @@ class AuthenticationServiceTest {
         when(userService.userDetailsService()).thenReturn(userDetailsService);
         when(userDetailsService.loadUserByUsername(anyString())).thenReturn(testUser);
         when(jwtService.generateToken(any())).thenReturn("accessToken");
-        when(refreshSessionRepository.findByUserOrderByCreatedAtAsc(any(), any()))
-                .thenReturn(Collections.emptyList());
         when(deviceFingerprintService.generateFingerprint(any(HttpServletRequest.class)))
                 .thenReturn("fingerprint-with-forwarded-ip");
 
@@ -350,14 +383,26 @@ class AuthenticationServiceTest {
         verify(deviceFingerprintService).generateFingerprint(mockRequest);
     }
 
+    @Test
+    @DisplayName("Должен ограничивать попытки входа по адресу соединения, а не по X-Forwarded-For")
+    void shouldThrottleByRemoteAddressIgnoringForwardedHeader() {
+        mockRequest.addHeader("X-Forwarded-For", "203.0.113.7");
+
+        when(userService.userDetailsService()).thenReturn(userDetailsService);
+        when(userDetailsService.loadUserByUsername(anyString())).thenReturn(testUser);
+        when(jwtService.generateToken(any())).thenReturn("accessToken");
+
+        authenticationService.signIn(signInRequest, mockResponse, mockRequest);
+
+        verify(loginThrottle).check("192.168.1.100", "500123321");
+    }
+
     @Test
     @DisplayName("DeviceFingerprintService должен вызываться для каждого запроса")
     void shouldCallDeviceFingerprintServiceForEachRequest() {
         when(userService.userDetailsService()).thenReturn(userDetailsService);
         when(userDetailsService.loadUserByUsername(anyString())).thenReturn(testUser);
         when(jwtService.generateToken(any())).thenReturn("accessToken");
-        when(refreshSessionRepository.findByUserOrderByCreatedAtAsc(any(), any()))
-                .thenReturn(Collections.emptyList());
         when(deviceFingerprintService.generateFingerprint(any(HttpServletRequest.class)))
                 .thenReturn("unique-fingerprint-123");
 
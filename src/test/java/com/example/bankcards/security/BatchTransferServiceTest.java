@@ -0,0 +1,204 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.components.LedgerCheckpointJob;
+import com.example.bankcards.dto.mappers.TransactionMapper;
+import com.example.bankcards.dto.transactions.BatchTransferItemResult;
+import com.example.bankcards.dto.transactions.TransferRequest;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.LedgerPosting;
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repositories.CardRepository;
+import com.example.bankcards.repositories.TransactionRepo;
+import com.example.bankcards.service.BatchTransferService;
+import com.example.bankcards.service.LedgerService;
+import com.example.bankcards.util.AuthenticatedUserUtil;
+import com.example.bankcards.util.EncryptionUtil;
+import com.example.bankcards.util.TransactionRetryTemplate;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.when;
+
+@DataJpaTest(properties = {
+        "spring.liquibase.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.datasource.url=jdbc:h2:mem:batch-transfers",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "logging.file.name=",
+        "logging.level.root=INFO",
+        "logging.level.com.example.bankcards=WARN",
+        "app.transfer.batch.max-size=10"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ImportAutoConfiguration(ValidationAutoConfiguration.class)
+@Import({BatchTransferService.class, LedgerService.class, TransactionMapper.class, TransactionRetryTemplate.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@DisplayName("Тесты пакетных переводов")
+class BatchTransferServiceTest {
+
+    @MockBean
+    private AuthenticatedUserUtil userUtil;
+
+    @MockBean
+    private EncryptionUtil encryptionUtil;
+
+    @Autowired
+    private BatchTransferService batchTransferService;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private TransactionRepo transactionRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private LedgerCheckpointJob checkpointJob;
+
+    private Card first;
+    private Card second;
+    private Card foreign;
+    private Card blocked;
+
+    @BeforeEach
+    void setUp() {
+        transactionTemplate.executeWithoutResult(status -> {
+            Role role = Role.builder().name("USER").build();
+            entityManager.persist(role);
+            User owner = user(role, "+79990000001");
+            User stranger = user(role, "+79990000002");
+
+            first = card(owner, "ACTIVE", "100.00", 1);
+            second = card(owner, "ACTIVE", "0.00", 2);
+            foreign = card(stranger, "ACTIVE", "50.00", 3);
+            blocked = card(owner, "BLOCKED", "0.00", 4);
+            when(userUtil.getCurrentUserId()).thenReturn(owner.getId());
+        });
+
+        checkpointJob = new LedgerCheckpointJob(jdbcTemplate, transactionTemplate, new SimpleMeterRegistry());
+    }
+
+    @Test
+    @DisplayName("Должен применять переводы по порядку и возвращать результат по каждому")
+    void shouldApplyTransfersInOrderWithPerItemResults() {
+        List<BatchTransferItemResult> results = batchTransferService.transfer(List.of(
+                transfer(first, second, "60"),
+                transfer(first, second, "60"),
+                transfer(second, first, "30"),
+                transfer(first, foreign, "10"),
+                transfer(first, blocked, "5"),
+                transfer(first, second, null),
+                transfer(first, first, "10")));
+
+        assertThat(results).extracting(BatchTransferItemResult::getSuccess)
+                .containsExactly(true, false, true, false, false, false, true);
+        assertThat(results.get(1).getErrorMessage()).isEqualTo("Недостаточно средств на карте отправителя");
+        assertThat(results.get(3).getErrorMessage()).isEqualTo("Карта получателя не принадлежит пользователю");
+        assertThat(results.get(4).getErrorMessage()).isEqualTo("Карта получателя заблокирована");
+        assertThat(results.get(5).getErrorMessage()).isEqualTo("Сумма перевода обязательна");
+        assertThat(results.get(2).getTransaction().getId()).isNotNull();
+
+        assertThat(balance(first)).isEqualByComparingTo("80.00");
+        assertThat(balance(second)).isEqualByComparingTo("30.00");
+        assertThat(balance(foreign)).isEqualByComparingTo("50.00");
+        assertThat(transactionRepository.findByCardId(first.getId(), Pageable.unpaged()).getTotalElements()).isEqualTo(3);
+        assertThat(checkpointJob.reconcile()).isZero();
+    }
+
+    @Test
+    @DisplayName("Должен отклонять слишком большой пакет")
+    void shouldRejectOversizedBatch() {
+        List<TransferRequest> requests = Collections.nCopies(11, transfer(first, second, "1"));
+
+        assertThatThrownBy(() -> batchTransferService.transfer(requests))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(balance(first)).isEqualByComparingTo("100.00");
+    }
+
+    @Test
+    @DisplayName("Должен отклонять пакет с пустым элементом")
+    void shouldRejectNullItem() {
+        List<TransferRequest> requests = Arrays.asList(null, transfer(first, second, "1"));
+
+        assertThatThrownBy(() -> batchTransferService.transfer(requests))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Перевод в пакете не может быть пустым");
+        assertThat(balance(first)).isEqualByComparingTo("100.00");
+    }
+
+    private BigDecimal balance(Card card) {
+        return cardRepository.findById(card.getId()).orElseThrow().getBalance();
+    }
+
+    private static TransferRequest transfer(Card from, Card to, String amount) {
+        return TransferRequest.builder()
+                .fromCardId(from.getId())
+                .toCardId(to.getId())
+                .amount(amount == null ? null : new BigDecimal(amount))
+                .build();
+    }
+
+    private User user(Role role, String phoneNumber) {
+        User user = User.builder()
+                .phoneNumber(phoneNumber)
+                .password("secret")
+                .firstName("Иван")
+                .middleName("Иванович")
+                .lastName("Иванов")
+                .role(role)
+                .createdAt(Instant.now())
+                .build();
+        entityManager.persist(user);
+        return user;
+    }
+
+    private Card card(User owner, String status, String balance, int number) {
+        Card card = new Card()
+                .setCardNumber("400012345678900" + number)
+                .setOwner(owner)
+                .setExpiryDate(LocalDate.now().plusYears(3))
+                .setStatus(status)
+                .setBalance(new BigDecimal(balance))
+                .setCreatedAt(Instant.now());
+        entityManager.persist(card);
+        if (card.getBalance().signum() != 0) {
+            entityManager.persist(new LedgerPosting(null, null, card.getId(), card.getBalance(), Instant.now()));
+        }
+        return card;
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Тесты ограниченного пула хэширования паролей")
+class BoundedPasswordEncoderTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private ThreadPoolExecutor executor;
+    private BoundedPasswordEncoder encoder;
+
+    @BeforeEach
+    void setUp() {
+        executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(1),
+                new CustomizableThreadFactory("password-hashing-"));
+        encoder = new BoundedPasswordEncoder(new ThreadNameEncoder(), executor, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("Должен выполнять хэширование и проверку в выделенном пуле")
+    void shouldHashOnExecutor() {
+        String hash = encoder.encode("qwe");
+
+        assertThat(hash).startsWith("password-hashing-").endsWith(":qwe");
+        assertThat(encoder.matches("qwe", "any")).isTrue();
+    }
+
+    @Test
+    @DisplayName("Должен сразу отклонять запрос при заполненной очереди")
+    void shouldRejectWhenQueueIsFull() {
+        executor.submit(this::awaitRelease);
+        executor.submit(this::awaitRelease);
+
+        assertThatThrownBy(() -> encoder.encode("qwe"))
+                .isInstanceOf(TooManyRequestsException.class);
+        assertThat(meterRegistry.get("password_hashing.rejected").counter().count()).isEqualTo(1);
+    }
+
+    private void awaitRelease() {
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class ThreadNameEncoder implements PasswordEncoder {
+        @Override
+        public String encode(CharSequence rawPassword) {
+            return Thread.currentThread().getName() + ":" + rawPassword;
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            return Thread.currentThread().getName().startsWith("password-hashing-");
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.config.EncryptionKeyRingProperties;
+import com.example.bankcards.util.CardNumberAllocator;
+import com.example.bankcards.util.EncryptionUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Тесты выдачи номеров карт")
+class CardNumberAllocatorTest {
+    private static final String KEY = "cd0211c7721d48006aff56996fe13e33d2b4924672b3a6aa2d2bf7786bfa0fee";
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private CardNumberAllocator allocator;
+    private final EncryptionUtil encryptionUtil =
+            new EncryptionUtil(new SimpleMeterRegistry(), new EncryptionKeyRingProperties());
+
+    @BeforeEach
+    void setUp() {
+        AtomicLong sequence = new AtomicLong(1);
+        when(jdbcTemplate.queryForObject(anyString(), eq(Long.class)))
+                .thenAnswer(invocation -> sequence.getAndAdd(50));
+        allocator = new CardNumberAllocator(jdbcTemplate, KEY);
+    }
+
+    @Test
+    @DisplayName("Должен выдавать валидные номера формата 4000 + 11 цифр + контрольная")
+    void shouldAllocateValidCardNumbers() {
+        String cardNumber = allocator.allocate();
+
+        assertThat(cardNumber).hasSize(16).startsWith("4000").matches("\\d{16}");
+        assertThat(encryptionUtil.isValidCardNumber(cardNumber)).isTrue();
+    }
+
+    @Test
+    @DisplayName("Должен выдавать уникальные номера, обращаясь к БД один раз на блок")
+    void shouldAllocateUniqueNumbersPerBlock() {
+        Set<String> cardNumbers = new HashSet<>();
+        for (int i = 0; i < 10_000; i++) {
+            cardNumbers.add(allocator.allocate());
+        }
+
+        assertThat(cardNumbers).hasSize(10_000);
+        verify(jdbcTemplate, times(200)).queryForObject(anyString(), eq(Long.class));
+    }
+
+    @Test
+    @DisplayName("Соседние порядковые номера не должны давать соседние номера карт")
+    void shouldNotIssueSequentialNumbers() {
+        long first = Long.parseLong(allocator.allocate().substring(4, 15));
+        long second = Long.parseLong(allocator.allocate().substring(4, 15));
+
+        assertThat(Math.abs(second - first)).isGreaterThan(1);
+    }
+}
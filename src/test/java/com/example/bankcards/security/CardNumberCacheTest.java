@@ -0,0 +1,73 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.util.CardNumberCache;
+import com.example.bankcards.util.EncryptionUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Тесты кэша расшифрованных номеров карт")
+class CardNumberCacheTest {
+
+    @Mock
+    private EncryptionUtil encryptionUtil;
+
+    private SimpleMeterRegistry meterRegistry;
+    private CardNumberCache cardNumberCache;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        cardNumberCache = new CardNumberCache(encryptionUtil, meterRegistry, 100, Duration.ofMinutes(5));
+    }
+
+    @Test
+    @DisplayName("Повторный просмотр карты не должен расшифровывать номер заново")
+    void shouldServeRepeatedRevealFromCache() {
+        when(encryptionUtil.revealCardNumber("cipher-1")).thenReturn("4000123456789012");
+
+        assertThat(cardNumberCache.reveal(1L, "cipher-1")).isEqualTo("4000123456789012");
+        assertThat(cardNumberCache.reveal(1L, "cipher-1")).isEqualTo("4000123456789012");
+
+        verify(encryptionUtil, times(1)).revealCardNumber("cipher-1");
+        assertThat(meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("cache.gets").tag("result", "miss").functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Смена шифротекста карты должна приводить к повторной расшифровке")
+    void shouldDecryptAgainWhenCiphertextChanges() {
+        when(encryptionUtil.revealCardNumber("cipher-1")).thenReturn("4000123456789012");
+        when(encryptionUtil.revealCardNumber("cipher-2")).thenReturn("4000123456789012");
+
+        cardNumberCache.reveal(1L, "cipher-1");
+        cardNumberCache.reveal(1L, "cipher-2");
+
+        verify(encryptionUtil).revealCardNumber("cipher-1");
+        verify(encryptionUtil).revealCardNumber("cipher-2");
+    }
+
+    @Test
+    @DisplayName("После удаления из кэша номер должен расшифровываться заново")
+    void shouldDecryptAgainAfterEviction() {
+        when(encryptionUtil.revealCardNumber("cipher-1")).thenReturn("4000123456789012");
+
+        cardNumberCache.reveal(1L, "cipher-1");
+        cardNumberCache.evict(1L);
+
+        assertThat(cardNumberCache.reveal(1L, "cipher-1")).isEqualTo("4000123456789012");
+        verify(encryptionUtil, times(2)).revealCardNumber("cipher-1");
+    }
+}
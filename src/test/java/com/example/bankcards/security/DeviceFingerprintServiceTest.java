@@ -83,20 +83,18 @@ class DeviceFingerprintServiceTest {
     }
 
     @Test
-    @DisplayName("Должен генерировать уникальные fingerprints даже для похожих запросов")
-    void shouldGenerateUniqueFingerprintsForSimilarRequests() throws InterruptedException {
+    @DisplayName("Должен генерировать одинаковый fingerprint для повторных запросов одного устройства")
+    void shouldGenerateStableFingerprintForSameDevice() throws InterruptedException {
         mockRequest.setRemoteAddr("192.168.1.100");
         mockRequest.addHeader("User-Agent", "Mozilla/5.0");
 
         String fingerprint1 = deviceFingerprintService.generateFingerprint(mockRequest);
 
-        // Небольшая задержка чтобы изменилась временная метка
         Thread.sleep(1);
 
         String fingerprint2 = deviceFingerprintService.generateFingerprint(mockRequest);
 
-        // Должны быть разными из-за временной метки
-        assertThat(fingerprint1).isNotEqualTo(fingerprint2);
+        assertThat(fingerprint1).isEqualTo(fingerprint2);
     }
 
     @Test
@@ -129,24 +127,36 @@ class DeviceFingerprintServiceTest {
     }
 
     @Test
-    @DisplayName("Должен приоритизировать X-Forwarded-For над X-Real-IP")
-    void shouldPrioritizeXForwardedForOverXRealIP() {
+    @DisplayName("Не должен зависеть от IP клиента, который меняется при смене сети")
+    void shouldIgnoreClientAddress() {
         MockHttpServletRequest request1 = new MockHttpServletRequest();
         request1.setRemoteAddr("10.0.0.1");
         request1.addHeader("X-Forwarded-For", "203.0.113.195");
-        request1.addHeader("X-Real-IP", "198.51.100.1");
         request1.addHeader("User-Agent", "Mozilla/5.0");
 
         MockHttpServletRequest request2 = new MockHttpServletRequest();
-        request2.setRemoteAddr("10.0.0.1");
+        request2.setRemoteAddr("10.0.0.2");
         request2.addHeader("X-Real-IP", "198.51.100.1");
         request2.addHeader("User-Agent", "Mozilla/5.0");
 
         String fingerprint1 = deviceFingerprintService.generateFingerprint(request1);
         String fingerprint2 = deviceFingerprintService.generateFingerprint(request2);
 
-        // Fingerprints должны отличаться, так как разные IP будут использованы
-        assertThat(fingerprint1).isNotEqualTo(fingerprint2);
+        assertThat(fingerprint1).isEqualTo(fingerprint2);
+    }
+
+    @Test
+    @DisplayName("Должен различать значения, перенесённые между заголовками")
+    void shouldSeparateHeaderValues() {
+        MockHttpServletRequest request1 = new MockHttpServletRequest();
+        request1.addHeader("User-Agent", "Mozilla/5.0");
+        request1.addHeader("Accept-Language", "ru");
+
+        MockHttpServletRequest request2 = new MockHttpServletRequest();
+        request2.addHeader("User-Agent", "Mozilla/5.0ru");
+
+        assertThat(deviceFingerprintService.generateFingerprint(request1))
+                .isNotEqualTo(deviceFingerprintService.generateFingerprint(request2));
     }
 
     @Test
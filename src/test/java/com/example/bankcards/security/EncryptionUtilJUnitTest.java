@@ -1,33 +1,41 @@
 package com.example.bankcards.security;
 
-import com.example.bankcards.repositories.CardRepository;
+import com.example.bankcards.config.EncryptionKeyRingProperties;
 import com.example.bankcards.util.EncryptionUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
-import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.Mock;
-import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
 import static org.assertj.core.api.Assertions.assertThat;
-import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.Mockito.when;
 
-@ExtendWith(MockitoExtension.class)
 @DisplayName("Тесты шифрования номеров карт (без Spring)")
 class EncryptionUtilJUnitTest {
 
-    @Mock
-    private CardRepository cardRepository;
-
+    private SimpleMeterRegistry meterRegistry;
     private EncryptionUtil encryptionUtil;
 
     @BeforeEach
     void setUp() {
-        encryptionUtil = new EncryptionUtil(cardRepository);
+        meterRegistry = new SimpleMeterRegistry();
+        encryptionUtil = new EncryptionUtil(meterRegistry, new EncryptionKeyRingProperties());
         ReflectionTestUtils.setField(encryptionUtil, "encryptionKey",
                 "cd0211c7721d48006aff56996fe13e33d2b4924672b3a6aa2d2bf7786bfa0fee");
+        ReflectionTestUtils.setField(encryptionUtil, "indexKey",
+                "cd0211c7721d48006aff56996fe13e33d2b4924672b3a6aa2d2bf7786bfa0fee");
     }
 
     @Test
@@ -44,21 +52,89 @@ class EncryptionUtilJUnitTest {
 
         assertThat(encrypted).isNotEqualTo(originalCardNumber);
         assertThat(decrypted).isEqualTo(originalCardNumber);
-        assertThat(encrypted).matches("^[A-Za-z0-9+/]*={0,2}$");
+        assertThat(encrypted).matches("^v1:[A-Za-z0-9+/]*={0,2}$");
+    }
+
+    @Test
+    @DisplayName("Должен расшифровывать номера, зашифрованные прежней реализацией")
+    public void testLegacyCiphertextDecryption() {
+        String legacyEncrypted = "Mk4/O06ymeNDMoNAhuMCyEPUHPW3te5dw7p/0JgXIQhmAQFXMOMLCFt+4y6jmm+3";
+
+        assertThat(encryptionUtil.decryptCardNumber(legacyEncrypted)).isEqualTo("4000123456789012");
+        assertThat(encryptionUtil.decryptCardNumber(encryptionUtil.encryptCardNumber("4000123456789012345")))
+                .isEqualTo("4000123456789012345");
+    }
+
+    @Test
+    @DisplayName("Должен расшифровывать прежний шифротекст, который начинается с 'v'")
+    public void testLegacyCiphertextStartingWithV() throws Exception {
+        String cardNumber = "4000123456789012";
+        String legacyEncrypted;
+        do {
+            legacyEncrypted = legacyEncrypt(cardNumber);
+        } while (!legacyEncrypted.startsWith("v"));
+
+        assertThat(encryptionUtil.decryptCardNumber(legacyEncrypted)).isEqualTo(cardNumber);
+        assertThat(encryptionUtil.needsReencryption(legacyEncrypted)).isTrue();
+    }
+
+    @Test
+    @DisplayName("Должен читать старые версии ключа после ротации и помечать их к перешифрованию")
+    public void testKeyRotation() {
+        String cardNumber = "4000123456789012";
+        String encryptedV1 = encryptionUtil.encryptCardNumber(cardNumber);
+
+        EncryptionKeyRingProperties keyRing = new EncryptionKeyRingProperties();
+        keyRing.setKeys(Map.of(1, "cd0211c7721d48006aff56996fe13e33d2b4924672b3a6aa2d2bf7786bfa0fee",
+                2, "0f1e2d3c4b5a69788796a5b4c3d2e1f00f1e2d3c4b5a69788796a5b4c3d2e1f0"));
+        keyRing.setActiveVersion(2);
+        EncryptionUtil rotated = new EncryptionUtil(meterRegistry, keyRing);
+        ReflectionTestUtils.setField(rotated, "encryptionKey",
+                "cd0211c7721d48006aff56996fe13e33d2b4924672b3a6aa2d2bf7786bfa0fee");
+        ReflectionTestUtils.setField(rotated, "indexKey",
+                "cd0211c7721d48006aff56996fe13e33d2b4924672b3a6aa2d2bf7786bfa0fee");
+        String encryptedV2 = rotated.encryptCardNumber(cardNumber);
+
+        assertThat(encryptedV1).startsWith("v1:");
+        assertThat(encryptedV2).startsWith("v2:");
+        assertThat(rotated.decryptCardNumber(encryptedV1)).isEqualTo(cardNumber);
+        assertThat(rotated.decryptCardNumber(encryptedV2)).isEqualTo(cardNumber);
+        assertThat(rotated.needsReencryption(encryptedV1)).isTrue();
+        assertThat(rotated.needsReencryption(cardNumber)).isTrue();
+        assertThat(rotated.needsReencryption(encryptedV2)).isFalse();
     }
 
     @Test
-    @DisplayName("Должен генерировать валидный номер карты")
-    public void testCardNumberGeneration() {
-        when(cardRepository.existsByCardNumber(any())).thenReturn(false);
+    @DisplayName("Должен раскрывать как зашифрованные, так и исторические открытые номера")
+    public void testRevealCardNumber() {
+        String cardNumber = "4000123456789012";
 
-        String generatedCardNumber = encryptionUtil.generateCardNumber();
-        System.out.println("Generated card number: " + generatedCardNumber);
+        assertThat(encryptionUtil.revealCardNumber(cardNumber)).isEqualTo(cardNumber);
+        assertThat(encryptionUtil.revealCardNumber(encryptionUtil.encryptCardNumber(cardNumber))).isEqualTo(cardNumber);
+    }
 
-        assertThat(generatedCardNumber).isNotNull();
-        assertThat(generatedCardNumber).hasSize(16);
-        assertThat(generatedCardNumber).matches("\\d{16}");
-        assertThat(encryptionUtil.isValidCardNumber(generatedCardNumber)).isTrue();
+    @Test
+    @DisplayName("Должен раскрывать пачку номеров параллельно с сохранением порядка")
+    public void testBatchReveal() {
+        ReflectionTestUtils.setField(encryptionUtil, "batchThreshold", 4);
+        List<String> cardNumbers = IntStream.range(0, 50)
+                .mapToObj(i -> String.format("40001234%08d", i))
+                .toList();
+        List<String> encrypted = cardNumbers.stream().map(encryptionUtil::encryptCardNumber).toList();
+
+        assertThat(encryptionUtil.revealCardNumbers(encrypted)).containsExactlyElementsOf(cardNumbers);
+        assertThat(meterRegistry.get("card_numbers.decrypt.batch").tag("mode", "parallel").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Должен вычислять детерминированный индекс номера карты")
+    public void testCardNumberHash() {
+        String hash = encryptionUtil.hashCardNumber("4000123456789012");
+
+        assertThat(hash).matches("^[a-f0-9]{64}$");
+        assertThat(encryptionUtil.hashCardNumber("4000 1234 5678 9012")).isEqualTo(hash);
+        assertThat(encryptionUtil.hashCardNumber("4000123456789020")).isNotEqualTo(hash);
     }
 
     @Test
@@ -80,6 +156,17 @@ class EncryptionUtilJUnitTest {
         assertThat(masked4).isEqualTo("****");
     }
 
+    @Test
+    @DisplayName("Должен маскировать номер по сохранённым последним цифрам без расшифровки")
+    public void testPanPartsMasking() {
+        String cardNumber = "4000 1234 5678 9012";
+
+        assertThat(encryptionUtil.panLast4(cardNumber)).isEqualTo("9012");
+        assertThat(encryptionUtil.panBin(cardNumber)).isEqualTo("400012");
+        assertThat(encryptionUtil.maskLast4("9012")).isEqualTo(encryptionUtil.maskCardNumber(cardNumber));
+        assertThat(encryptionUtil.maskLast4(null)).isEqualTo("****");
+    }
+
     @Test
     @DisplayName("Должен валидировать номера карт по алгоритму Луна")
     public void testCardNumberValidation() {
@@ -92,4 +179,22 @@ class EncryptionUtilJUnitTest {
         assertThat(encryptionUtil.isValidCardNumber("abcd1234efgh5678")).isFalse();
         assertThat(encryptionUtil.isValidCardNumber(null)).isFalse();
     }
-}
\ No newline at end of file
+
+    /**
+     * Шифрование прежним AES-CBC: base64(iv || шифротекст) на первых 16 байтах SHA-256 ключа.
+     */
+    private static String legacyEncrypt(String plainText) throws Exception {
+        byte[] key = Arrays.copyOf(MessageDigest.getInstance("SHA-256")
+                .digest("cd0211c7721d48006aff56996fe13e33d2b4924672b3a6aa2d2bf7786bfa0fee".getBytes(StandardCharsets.UTF_8)), 16);
+        byte[] iv = new byte[16];
+        new SecureRandom().nextBytes(iv);
+        Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "AES"), new IvParameterSpec(iv));
+        byte[] encrypted = cipher.doFinal(plainText.getBytes(StandardCharsets.UTF_8));
+
+        byte[] raw = new byte[iv.length + encrypted.length];
+        System.arraycopy(iv, 0, raw, 0, iv.length);
+        System.arraycopy(encrypted, 0, raw, iv.length, encrypted.length);
+        return Base64.getEncoder().encodeToString(raw);
+    }
+}
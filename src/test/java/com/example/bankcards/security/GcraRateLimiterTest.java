@@ -0,0 +1,68 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.util.GcraRateLimiter;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Тесты ограничителя частоты входа")
+class GcraRateLimiterTest {
+
+    @Test
+    @DisplayName("Должен пропускать серию до размера корзины и отклонять следующий запрос")
+    void shouldAllowBurstThenReject() {
+        GcraRateLimiter limiter = new GcraRateLimiter(5, Duration.ofMinutes(1), 3, 100);
+
+        assertThat(limiter.tryAcquire("+996555123456")).isZero();
+        assertThat(limiter.tryAcquire("+996555123456")).isZero();
+        assertThat(limiter.tryAcquire("+996555123456")).isZero();
+
+        long waitNanos = limiter.tryAcquire("+996555123456");
+        assertThat(waitNanos).isPositive().isLessThanOrEqualTo(Duration.ofSeconds(12).toNanos());
+    }
+
+    @Test
+    @DisplayName("Должен вести независимые корзины для разных ключей")
+    void shouldKeepKeysIndependent() {
+        GcraRateLimiter limiter = new GcraRateLimiter(1, Duration.ofMinutes(1), 1, 100);
+
+        assertThat(limiter.tryAcquire("10.0.0.1")).isZero();
+        assertThat(limiter.tryAcquire("10.0.0.1")).isPositive();
+        assertThat(limiter.tryAcquire("10.0.0.2")).isZero();
+    }
+
+    @Test
+    @DisplayName("Должен восстанавливать корзину со временем")
+    void shouldRefillOverTime() throws InterruptedException {
+        GcraRateLimiter limiter = new GcraRateLimiter(1, Duration.ofMillis(50), 1, 100);
+
+        assertThat(limiter.tryAcquire("10.0.0.1")).isZero();
+        assertThat(limiter.tryAcquire("10.0.0.1")).isPositive();
+        Thread.sleep(60);
+        assertThat(limiter.tryAcquire("10.0.0.1")).isZero();
+    }
+
+    @Test
+    @DisplayName("Не должен выделять память при проверке существующего ключа")
+    void shouldNotAllocateOnHotPath() {
+        GcraRateLimiter limiter = new GcraRateLimiter(1_000_000, Duration.ofSeconds(1), 1_000_000, 100);
+        String key = "10.0.0.1";
+        for (int i = 0; i < 100_000; i++) {
+            limiter.tryAcquire(key);
+        }
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 100_000; i++) {
+            limiter.tryAcquire(key);
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertThat(allocated).isLessThan(100_000);
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.dto.transactions.TransactionDto;
+import com.example.bankcards.exception.IdempotencyKeyConflictException;
+import com.example.bankcards.util.IdempotencyCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Тесты кэша ключей идемпотентности")
+class IdempotencyCacheTest {
+    private static final String KEY = "0f7a3c1e-idempotency";
+    private static final String HASH = "request-hash";
+
+    private IdempotencyCache cache;
+    private AtomicInteger executions;
+
+    @BeforeEach
+    void setUp() {
+        cache = new IdempotencyCache(new SimpleMeterRegistry(), 100, Duration.ofMinutes(10), Duration.ofSeconds(5));
+        executions = new AtomicInteger();
+    }
+
+    @Test
+    @DisplayName("Параллельный дубль должен дождаться результата первого запроса")
+    void shouldShareResultWithConcurrentDuplicate() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<TransactionDto> first = CompletableFuture.supplyAsync(() ->
+                cache.execute(1L, KEY, HASH, () -> {
+                    started.countDown();
+                    await(release);
+                    return transaction(executions.incrementAndGet());
+                }));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<TransactionDto> duplicate = CompletableFuture.supplyAsync(() ->
+                cache.execute(1L, KEY, HASH, () -> transaction(executions.incrementAndGet())));
+        release.countDown();
+
+        assertThat(first.get(5, TimeUnit.SECONDS)).isSameAs(duplicate.get(5, TimeUnit.SECONDS));
+        assertThat(executions.get()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Должен отклонять ключ, повторно использованный с другим запросом")
+    void shouldRejectKeyReusedForDifferentRequest() {
+        cache.execute(1L, KEY, HASH, () -> transaction(1));
+
+        assertThatThrownBy(() -> cache.execute(1L, KEY, "other-hash", () -> transaction(2)))
+                .isInstanceOf(IdempotencyKeyConflictException.class);
+    }
+
+    @Test
+    @DisplayName("Ключи разных пользователей не должны пересекаться")
+    void shouldScopeKeysByUser() {
+        TransactionDto own = cache.execute(1L, KEY, HASH, () -> transaction(1));
+        TransactionDto other = cache.execute(2L, KEY, HASH, () -> transaction(2));
+
+        assertThat(other).isNotSameAs(own);
+    }
+
+    @Test
+    @DisplayName("Неудачный запрос не должен запоминаться")
+    void shouldNotCacheFailures() {
+        assertThatThrownBy(() -> cache.execute(1L, KEY, HASH, () -> {
+            throw new IllegalArgumentException("Недостаточно средств на карте отправителя");
+        })).isInstanceOf(IllegalArgumentException.class);
+
+        TransactionDto result = cache.execute(1L, KEY, HASH, () -> transaction(executions.incrementAndGet()));
+
+        assertThat(result.getId()).isEqualTo(1L);
+    }
+
+    private static TransactionDto transaction(long id) {
+        TransactionDto dto = new TransactionDto();
+        dto.setId(id);
+        return dto;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
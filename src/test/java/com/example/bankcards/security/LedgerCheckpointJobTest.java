@@ -0,0 +1,258 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.components.LedgerCheckpointJob;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.LedgerPosting;
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.service.LedgerService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = {
+        "spring.liquibase.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.datasource.url=jdbc:h2:mem:ledger-checkpoints",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "logging.file.name=",
+        "logging.level.root=INFO",
+        "logging.level.com.example.bankcards=WARN"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(LedgerService.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@DisplayName("Тесты контрольных точек журнала проводок")
+class LedgerCheckpointJobTest {
+    private static final String INSERT_POSTING =
+            "INSERT INTO ledger_postings (transaction_id, card_id, amount, created_at) VALUES (NULL, ?, ?, ?)";
+    private static final String UPDATE_BALANCE = "UPDATE cards SET balance = balance + ? WHERE id = ?";
+
+    @Autowired
+    private LedgerService ledgerService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private SimpleMeterRegistry meterRegistry;
+    private LedgerCheckpointJob checkpointJob;
+
+    private Card first;
+    private Card second;
+
+    @BeforeEach
+    void setUp() {
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("DELETE FROM card_balance_checkpoints");
+            jdbcTemplate.update("DELETE FROM ledger_postings");
+            jdbcTemplate.update("ALTER TABLE ledger_postings ALTER COLUMN id RESTART WITH 1");
+            jdbcTemplate.update("DELETE FROM ledger_posting_gaps");
+            jdbcTemplate.update("DELETE FROM ledger_checkpoint_horizon");
+            jdbcTemplate.update("DELETE FROM cards");
+            jdbcTemplate.update("DELETE FROM users");
+            jdbcTemplate.update("DELETE FROM roles");
+
+            Role role = Role.builder().name("USER").build();
+            entityManager.persist(role);
+            User owner = User.builder()
+                    .phoneNumber("+79990000001")
+                    .password("secret")
+                    .firstName("Иван")
+                    .middleName("Иванович")
+                    .lastName("Иванов")
+                    .role(role)
+                    .createdAt(Instant.now())
+                    .build();
+            entityManager.persist(owner);
+
+            first = card(owner, "100.00", 1);
+            second = card(owner, "0.00", 2);
+        });
+
+        meterRegistry = new SimpleMeterRegistry();
+        checkpointJob = new LedgerCheckpointJob(jdbcTemplate, transactionTemplate, meterRegistry);
+        ReflectionTestUtils.setField(checkpointJob, "gapTimeout", Duration.ofMinutes(10));
+        ReflectionTestUtils.setField(checkpointJob, "maxPostings", 1000);
+    }
+
+    @Test
+    @DisplayName("Должен считать баланс на момент времени по контрольной точке и проводкам после неё")
+    void shouldComputeBalanceAsOfFromCheckpoint() {
+        Instant beforeTransfers = Instant.now();
+        transfer(first, second, "60");
+
+        assertThat(checkpointJob.checkpoint()).isPositive();
+        transfer(first, second, "25");
+
+        assertThat(ledgerService.balanceAsOf(first.getId(), Instant.now())).isEqualByComparingTo("15.00");
+        assertThat(ledgerService.balanceAsOf(second.getId(), Instant.now())).isEqualByComparingTo("85.00");
+        assertThat(ledgerService.balanceAsOf(first.getId(), beforeTransfers)).isEqualByComparingTo("100.00");
+        assertThat(ledgerService.balanceAsOf(second.getId(), beforeTransfers)).isEqualByComparingTo("0.00");
+        assertThat(checkpointJob.reconcile()).isZero();
+    }
+
+    @Test
+    @DisplayName("Проводка, закоммиченная после проводок с большими ID, должна попасть в контрольную точку")
+    void shouldCheckpointPostingCommittedAfterHigherIds() throws Exception {
+        CountDownLatch inserted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<?> slowTransfer = executor.submit(() -> transactionTemplate.executeWithoutResult(status -> {
+            post(first, new BigDecimal("5"));
+            inserted.countDown();
+            await(release);
+        }));
+        try {
+            assertThat(inserted.await(10, TimeUnit.SECONDS)).isTrue();
+            transfer(second, second, "15");
+            checkpointJob.checkpoint();
+        } finally {
+            release.countDown();
+            slowTransfer.get(10, TimeUnit.SECONDS);
+            executor.shutdown();
+        }
+
+        transfer(first, second, "10");
+        checkpointJob.checkpoint();
+
+        assertThat(horizon()).isEqualTo(maxPostingId());
+        assertThat(ledgerService.balanceAsOf(first.getId(), Instant.now())).isEqualByComparingTo("95.00");
+        assertThat(ledgerService.balanceAsOf(second.getId(), Instant.now())).isEqualByComparingTo("10.00");
+        assertThat(checkpointJob.reconcile()).isZero();
+    }
+
+    @Test
+    @DisplayName("Должен перешагнуть пропуск ID, не заполненный дольше таймаута")
+    void shouldSkipGapLeftByRolledBackPosting() {
+        ReflectionTestUtils.setField(checkpointJob, "gapTimeout", Duration.ZERO);
+        checkpointJob.checkpoint();
+        rolledBackPosting(first);
+        transfer(first, second, "10");
+
+        checkpointJob.checkpoint();
+
+        assertThat(horizon()).isEqualTo(maxPostingId());
+        assertThat(checkpointJob.reconcile()).isZero();
+    }
+
+    @Test
+    @DisplayName("Должен перешагнуть за один запуск все пропуски старше таймаута")
+    void shouldSkipEveryTimedOutGapInOneRun() {
+        checkpointJob.checkpoint();
+        long initialHorizon = horizon();
+        rolledBackPosting(first);
+        transfer(first, second, "10");
+        rolledBackPosting(second);
+        transfer(second, first, "5");
+        rolledBackPosting(first);
+        transfer(first, second, "1");
+
+        checkpointJob.checkpoint();
+        assertThat(horizon()).isEqualTo(initialHorizon);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM ledger_posting_gaps", Integer.class)).isEqualTo(3);
+
+        jdbcTemplate.update("UPDATE ledger_posting_gaps SET seen_at = ?",
+                Timestamp.from(Instant.now().minus(Duration.ofHours(1))));
+        checkpointJob.checkpoint();
+
+        assertThat(horizon()).isEqualTo(maxPostingId());
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM ledger_posting_gaps", Integer.class)).isZero();
+        assertThat(ledgerService.balanceAsOf(first.getId(), Instant.now())).isEqualByComparingTo("94.00");
+        assertThat(checkpointJob.reconcile()).isZero();
+    }
+
+    @Test
+    @DisplayName("Должен находить баланс, изменённый в обход журнала")
+    void shouldReportBalanceChangedOutsideLedger() {
+        transfer(first, second, "40");
+        checkpointJob.checkpoint();
+        jdbcTemplate.update(UPDATE_BALANCE, BigDecimal.ONE, second.getId());
+
+        assertThat(checkpointJob.reconcile()).isEqualTo(1);
+        assertThat(meterRegistry.get("ledger.reconciliation.mismatches").counter().count()).isEqualTo(1);
+    }
+
+    private void transfer(Card from, Card to, String amount) {
+        BigDecimal value = new BigDecimal(amount);
+        transactionTemplate.executeWithoutResult(status -> {
+            post(from, value.negate());
+            post(to, value);
+        });
+    }
+
+    private void rolledBackPosting(Card card) {
+        transactionTemplate.executeWithoutResult(status -> {
+            post(card, new BigDecimal("5"));
+            status.setRollbackOnly();
+        });
+    }
+
+    private void post(Card card, BigDecimal amount) {
+        jdbcTemplate.update(UPDATE_BALANCE, amount, card.getId());
+        jdbcTemplate.update(INSERT_POSTING, card.getId(), amount, Timestamp.from(Instant.now()));
+    }
+
+    private long horizon() {
+        return jdbcTemplate.queryForObject("SELECT posting_id FROM ledger_checkpoint_horizon WHERE id = 1", Long.class);
+    }
+
+    private long maxPostingId() {
+        return jdbcTemplate.queryForObject("SELECT MAX(id) FROM ledger_postings", Long.class);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Card card(User owner, String balance, int number) {
+        Card card = new Card()
+                .setCardNumber("400012345678900" + number)
+                .setOwner(owner)
+                .setExpiryDate(LocalDate.now().plusYears(3))
+                .setStatus("ACTIVE")
+                .setBalance(new BigDecimal(balance))
+                .setCreatedAt(Instant.now());
+        entityManager.persist(card);
+        if (card.getBalance().signum() != 0) {
+            entityManager.persist(new LedgerPosting(null, null, card.getId(), card.getBalance(), Instant.now()));
+        }
+        return card;
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.config.PasswordEncoderFactory;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Тесты настраиваемого хэширования паролей")
+class PasswordEncoderFactoryTest {
+    private static final String LEGACY_HASH = "$2a$12$WB2YUbFcCN0tm44SBcKUjua9yiFBsfB3vW02IjuwzY7HGtlQIKzy2";
+
+    @Test
+    @DisplayName("Должен принимать существующие хэши без префикса и помечать их к пересчёту")
+    void shouldMatchLegacyHashes() {
+        PasswordEncoder encoder = PasswordEncoderFactory.create(PasswordEncoderFactory.BCRYPT, 4, 1000);
+
+        assertThat(encoder.matches("qwe", LEGACY_HASH)).isTrue();
+        assertThat(encoder.upgradeEncoding(LEGACY_HASH)).isTrue();
+    }
+
+    @Test
+    @DisplayName("Должен писать хэши с префиксом алгоритма и пересчитывать их при росте стоимости")
+    void shouldUpgradeWhenCostIncreases() {
+        PasswordEncoder weak = PasswordEncoderFactory.create(PasswordEncoderFactory.BCRYPT, 4, 1000);
+        PasswordEncoder strong = PasswordEncoderFactory.create(PasswordEncoderFactory.BCRYPT, 5, 1000);
+        String hash = weak.encode("qwe");
+
+        assertThat(hash).startsWith("{bcrypt}$2a$04$");
+        assertThat(weak.upgradeEncoding(hash)).isFalse();
+        assertThat(strong.matches("qwe", hash)).isTrue();
+        assertThat(strong.upgradeEncoding(hash)).isTrue();
+    }
+
+    @Test
+    @DisplayName("Должен переводить хэши на другой алгоритм")
+    void shouldSwitchAlgorithm() {
+        PasswordEncoder bcrypt = PasswordEncoderFactory.create(PasswordEncoderFactory.BCRYPT, 4, 1000);
+        PasswordEncoder pbkdf2 = PasswordEncoderFactory.create(PasswordEncoderFactory.PBKDF2, 4, 1000);
+        String bcryptHash = bcrypt.encode("qwe");
+        String pbkdf2Hash = pbkdf2.encode("qwe");
+
+        assertThat(pbkdf2Hash).startsWith("{pbkdf2}");
+        assertThat(pbkdf2.matches("qwe", bcryptHash)).isTrue();
+        assertThat(pbkdf2.upgradeEncoding(bcryptHash)).isTrue();
+        assertThat(pbkdf2.upgradeEncoding(pbkdf2Hash)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Должен отклонять неизвестный алгоритм")
+    void shouldRejectUnknownAlgorithm() {
+        assertThatThrownBy(() -> PasswordEncoderFactory.create("md5", 10, 1000))
+                .isInstanceOf(IllegalStateException.class);
+    }
+}
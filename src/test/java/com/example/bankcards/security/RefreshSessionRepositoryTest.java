@@ -0,0 +1,94 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.entity.RefreshSession;
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repositories.RefreshSessionRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = {
+        "spring.liquibase.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.datasource.url=jdbc:h2:mem:refresh-sessions",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "logging.file.name=",
+        "logging.level.root=INFO",
+        "logging.level.com.example.bankcards=WARN"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@DisplayName("Тесты репозитория refresh-сессий")
+class RefreshSessionRepositoryTest {
+    private static final Instant NOW = Instant.parse("2026-01-01T00:00:00Z");
+
+    @Autowired
+    private RefreshSessionRepository repository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        Role role = Role.builder().name("USER").build();
+        entityManager.persist(role);
+        user = User.builder()
+                .phoneNumber("+79990000000")
+                .password("secret")
+                .firstName("Иван")
+                .middleName("Иванович")
+                .lastName("Иванов")
+                .role(role)
+                .createdAt(NOW)
+                .build();
+        entityManager.persist(user);
+    }
+
+    @Test
+    @DisplayName("Должен оставлять давно созданную, но недавно повёрнутую сессию")
+    void shouldKeepOldSessionRotatedRecently() {
+        RefreshSession rotated = session(NOW.minus(Duration.ofDays(30)), NOW.minus(Duration.ofMinutes(1)));
+        RefreshSession newer = session(NOW.minus(Duration.ofDays(1)), null);
+        RefreshSession older = session(NOW.minus(Duration.ofDays(10)), null);
+        entityManager.flush();
+
+        int deleted = repository.deleteAllExceptNewest(user.getId(), 2);
+        entityManager.clear();
+
+        assertThat(deleted).isEqualTo(1);
+        assertThat(repository.findAll())
+                .extracting(RefreshSession::getId)
+                .containsExactlyInAnyOrder(rotated.getId(), newer.getId())
+                .doesNotContain(older.getId());
+    }
+
+    private RefreshSession session(Instant createdAt, Instant rotatedAt) {
+        RefreshSession session = RefreshSession.builder()
+                .user(user)
+                .refreshToken(UUID.randomUUID())
+                .fingerprint("fingerprint")
+                .ua("JUnit")
+                .ip("127.0.0.1")
+                .expiresIn(NOW.plus(Duration.ofDays(30)).toEpochMilli())
+                .rotatedAt(rotatedAt)
+                .createdAt(createdAt)
+                .build();
+        entityManager.persist(session);
+        return session;
+    }
+}
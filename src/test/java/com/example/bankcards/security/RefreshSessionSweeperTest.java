@@ -0,0 +1,62 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.components.RefreshSessionSweeper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Тесты очистки истёкших refresh-сессий")
+class RefreshSessionSweeperTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private SimpleMeterRegistry meterRegistry;
+    private RefreshSessionSweeper sweeper;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        sweeper = new RefreshSessionSweeper(jdbcTemplate, meterRegistry);
+        ReflectionTestUtils.setField(sweeper, "enabled", true);
+        ReflectionTestUtils.setField(sweeper, "batchSize", 100);
+        ReflectionTestUtils.setField(sweeper, "maxBatches", 10);
+        ReflectionTestUtils.setField(sweeper, "pauseMillis", 0L);
+    }
+
+    @Test
+    @DisplayName("Должен удалять порциями, пока не останется неполная порция")
+    void shouldSweepInBatches() {
+        when(jdbcTemplate.update(anyString(), anyLong(), eq(100))).thenReturn(100, 100, 37);
+
+        sweeper.sweep();
+
+        verify(jdbcTemplate, times(3)).update(anyString(), anyLong(), eq(100));
+        assertThat(meterRegistry.get("refresh_sessions.swept").counter().count()).isEqualTo(237);
+    }
+
+    @Test
+    @DisplayName("Должен ограничивать число порций за один запуск")
+    void shouldStopAfterMaxBatches() {
+        when(jdbcTemplate.update(anyString(), anyLong(), eq(100))).thenReturn(100);
+
+        sweeper.sweep();
+
+        verify(jdbcTemplate, times(10)).update(anyString(), anyLong(), eq(100));
+    }
+}
@@ -0,0 +1,300 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.dto.mappers.TransactionMapper;
+import com.example.bankcards.dto.transactions.TransactionDto;
+import com.example.bankcards.dto.transactions.TransferRequest;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.enums.TransactionStatus;
+import com.example.bankcards.repositories.CardRepository;
+import com.example.bankcards.repositories.TransactionRepo;
+import com.example.bankcards.service.LedgerService;
+import com.example.bankcards.service.TransactionService;
+import com.example.bankcards.util.AuthenticatedUserUtil;
+import com.example.bankcards.util.EncryptionUtil;
+import com.example.bankcards.util.IdempotencyCache;
+import com.example.bankcards.util.TransactionRetryTemplate;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.when;
+
+/**
+ * Перевод одним SQL-запросом ({@code app.transfer.mode=sql}) на настоящем PostgreSQL со схемой из миграций:
+ * H2 не выполняет изменяющие CTE. Без Docker тесты пропускаются.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@DataJpaTest(properties = {
+        "spring.jpa.hibernate.ddl-auto=none",
+        "logging.file.name=",
+        "logging.level.root=INFO",
+        "logging.level.com.example.bankcards=WARN",
+        "app.transfer.mode=sql",
+        "app.transfer.retry.max-attempts=1"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({TransactionService.class, LedgerService.class, TransactionMapper.class, TransactionRetryTemplate.class,
+        SqlTransferPostgresTest.AuditingConfig.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@DisplayName("Тесты перевода одним SQL-запросом на PostgreSQL")
+class SqlTransferPostgresTest {
+    private static final String LEDGER_SUM =
+            "SELECT COALESCE(SUM(amount), 0) FROM ledger_postings WHERE card_id = ?";
+
+    @Container
+    static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", POSTGRES::getJdbcUrl);
+        registry.add("spring.datasource.username", POSTGRES::getUsername);
+        registry.add("spring.datasource.password", POSTGRES::getPassword);
+        registry.add("spring.datasource.driver-class-name", POSTGRES::getDriverClassName);
+    }
+
+    @MockBean
+    private AuthenticatedUserUtil userUtil;
+
+    @MockBean
+    private EncryptionUtil encryptionUtil;
+
+    @MockBean
+    private IdempotencyCache idempotencyCache;
+
+    @MockBean
+    private Validator validator;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private TransactionRepo transactionRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+    private Card first;
+    private Card second;
+    private Card foreign;
+    private Card blocked;
+
+    @TestConfiguration
+    @EnableJpaAuditing
+    static class AuditingConfig {
+    }
+
+    @BeforeEach
+    void setUp() {
+        transactionTemplate.executeWithoutResult(status -> {
+            Role role = entityManager.find(Role.class, 1L);
+            User owner = user(role);
+            User stranger = user(role);
+
+            first = card(owner, "ACTIVE", "100.00");
+            second = card(owner, "ACTIVE", "0.00");
+            foreign = card(stranger, "ACTIVE", "0.00");
+            blocked = card(owner, "BLOCKED", "0.00");
+            when(userUtil.getCurrentUserId()).thenReturn(owner.getId());
+        });
+    }
+
+    @Test
+    @DisplayName("Должен списать, зачислить, записать транзакцию и проводки")
+    void shouldTransferAndPostToLedger() {
+        TransactionDto result = transactionService.transferBetweenUserCards(transfer(first, second, "40"));
+
+        assertThat(balance(first)).isEqualByComparingTo("60.00");
+        assertThat(balance(second)).isEqualByComparingTo("40.00");
+        assertThat(transactionRepository.findById(result.getId()).orElseThrow().getStatus())
+                .isEqualTo(TransactionStatus.SUCCESS.name());
+        assertThat(postings(result.getId())).containsExactlyInAnyOrder(
+                Map.entry(first.getId(), new BigDecimal("-40.00")),
+                Map.entry(second.getId(), new BigDecimal("40.00")));
+    }
+
+    @Test
+    @DisplayName("Должен отклонить перевод при недостатке средств без изменения балансов")
+    void shouldRejectInsufficientFunds() {
+        assertRejected(transfer(first, second, "100.01"));
+
+        assertThat(balance(first)).isEqualByComparingTo("100.00");
+        assertThat(balance(second)).isEqualByComparingTo("0.00");
+        assertThat(transactionRepository.findByCardId(first.getId(), Pageable.unpaged()))
+                .singleElement()
+                .satisfies(transaction -> assertThat(transaction.getStatus()).isEqualTo(TransactionStatus.FAILED.name()));
+    }
+
+    @Test
+    @DisplayName("Должен откатить списание, если карта получателя чужая")
+    void shouldRollBackDebitForForeignCard() {
+        assertRejected(transfer(first, foreign, "10"));
+
+        assertThat(balance(first)).isEqualByComparingTo("100.00");
+        assertThat(balance(foreign)).isEqualByComparingTo("0.00");
+        assertThat(ledgerSum(first)).isEqualByComparingTo("0");
+    }
+
+    @Test
+    @DisplayName("Должен откатить списание, если карта получателя заблокирована")
+    void shouldRollBackDebitForBlockedCard() {
+        assertRejected(transfer(first, blocked, "10"));
+
+        assertThat(balance(first)).isEqualByComparingTo("100.00");
+        assertThat(balance(blocked)).isEqualByComparingTo("0.00");
+        assertThat(ledgerSum(first)).isEqualByComparingTo("0");
+    }
+
+    @Test
+    @DisplayName("Пополнение через терминал должно списываться с внешнего счёта")
+    void shouldPostTopUpAgainstExternalAccount() {
+        TransactionDto result = transactionService.transferBetweenUserCards(transfer(first, first, "25"));
+
+        assertThat(balance(first)).isEqualByComparingTo("125.00");
+        assertThat(result.getDescription()).isEqualTo("Пополнение счета через терминал");
+        assertThat(postings(result.getId())).containsExactlyInAnyOrder(
+                Map.entry(-1L, new BigDecimal("-25.00")),
+                Map.entry(first.getId(), new BigDecimal("25.00")));
+    }
+
+    @Test
+    @DisplayName("Встречные переводы не должны взаимоблокироваться и терять обновления")
+    void shouldLockCardsInIdOrder() throws Exception {
+        transactionService.transferBetweenUserCards(transfer(first, second, "50"));
+        int threads = 8;
+        int transfersPerThread = 20;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            boolean forward = t % 2 == 0;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < transfersPerThread; i++) {
+                    try {
+                        transactionService.transferBetweenUserCards(
+                                forward ? transfer(first, second, "1") : transfer(second, first, "1"));
+                    } catch (IllegalArgumentException e) {
+                        assertThat(e.getMessage()).startsWith("Перевод отклонён");
+                    }
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(2, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+
+        assertThat(balance(first).add(balance(second))).isEqualByComparingTo("100.00");
+        assertThat(ledgerSum(first)).isEqualByComparingTo(balance(first).subtract(new BigDecimal("100.00")));
+        assertThat(ledgerSum(second)).isEqualByComparingTo(balance(second));
+    }
+
+    private void assertRejected(TransferRequest request) {
+        assertThatThrownBy(() -> transactionService.transferBetweenUserCards(request))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageStartingWith("Перевод отклонён");
+    }
+
+    private BigDecimal balance(Card card) {
+        return cardRepository.findById(card.getId()).orElseThrow().getBalance();
+    }
+
+    private BigDecimal ledgerSum(Card card) {
+        return jdbcTemplate.queryForObject(LEDGER_SUM, BigDecimal.class, card.getId());
+    }
+
+    /**
+     * Проводки транзакции: ID карты (-1 для внешнего счёта) и сумма.
+     */
+    private List<Map.Entry<Long, BigDecimal>> postings(Long transactionId) {
+        return jdbcTemplate.query("SELECT card_id, amount FROM ledger_postings WHERE transaction_id = ?",
+                (rs, row) -> Map.entry(rs.getObject("card_id") == null ? -1L : rs.getLong("card_id"),
+                        rs.getBigDecimal("amount")),
+                transactionId);
+    }
+
+    private static TransferRequest transfer(Card from, Card to, String amount) {
+        return TransferRequest.builder()
+                .fromCardId(from.getId())
+                .toCardId(to.getId())
+                .amount(new BigDecimal(amount))
+                .build();
+    }
+
+    private User user(Role role) {
+        User user = User.builder()
+                .phoneNumber("+7999" + String.format("%07d", SEQUENCE.incrementAndGet()))
+                .password("secret")
+                .firstName("Иван")
+                .middleName("Иванович")
+                .lastName("Иванов")
+                .role(role)
+                .createdAt(Instant.now())
+                .build();
+        entityManager.persist(user);
+        return user;
+    }
+
+    private Card card(User owner, String status, String balance) {
+        Card card = new Card()
+                .setCardNumber(String.format("40009999%08d", SEQUENCE.incrementAndGet()))
+                .setOwner(owner)
+                .setExpiryDate(LocalDate.now().plusYears(3))
+                .setStatus(status)
+                .setBalance(new BigDecimal(balance))
+                .setCreatedAt(Instant.now());
+        entityManager.persist(card);
+        return card;
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.bankcards.security;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.ResultSet;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Тесты отзыва токенов без обращения к БД")
+class TokenRevocationRegistryTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private TokenRevocationRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new TokenRevocationRegistry(jdbcTemplate);
+        ReflectionTestUtils.setField(registry, "enabled", true);
+        ReflectionTestUtils.setField(registry, "deletedRetention", Duration.ofDays(5));
+    }
+
+    @Test
+    @DisplayName("Не должен отзывать токены пользователей без ограничений")
+    void shouldAcceptUnknownUsers() {
+        assertThat(registry.isRevoked(1L, 0)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Должен отзывать токены заблокированного пользователя и принимать новые после разблокировки")
+    void shouldRevokeOnToggle() {
+        registry.onUserAccessChanged(new UserAccessChangedEvent(1L, 1, false, false));
+        assertThat(registry.isRevoked(1L, 0)).isTrue();
+        assertThat(registry.isRevoked(1L, 1)).isTrue();
+
+        registry.onUserAccessChanged(new UserAccessChangedEvent(1L, 2, true, false));
+        assertThat(registry.isRevoked(1L, 1)).isTrue();
+        assertThat(registry.isRevoked(1L, 2)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Должен отзывать токены удалённого пользователя")
+    void shouldRevokeDeletedUser() {
+        registry.onUserAccessChanged(new UserAccessChangedEvent(1L, 1, false, true));
+
+        assertThat(registry.isRevoked(1L, 5)).isTrue();
+    }
+
+    @Test
+    @DisplayName("Синхронизация с устаревшими данными не должна отменять локальную блокировку")
+    void shouldKeepNewerLocalStateOnSync() throws Exception {
+        ResultSet row = mock(ResultSet.class);
+        when(row.getLong("id")).thenReturn(1L);
+        when(row.getLong("token_version")).thenReturn(1L);
+        when(row.getBoolean("enabled")).thenReturn(true);
+        doAnswer(invocation -> {
+            invocation.<RowCallbackHandler>getArgument(1).processRow(row);
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class));
+
+        registry.onUserAccessChanged(new UserAccessChangedEvent(1L, 2, false, false));
+        registry.sync();
+
+        assertThat(registry.isRevoked(1L, 2)).isTrue();
+    }
+
+    @Test
+    @DisplayName("Должен подхватывать блокировки с других инстансов при синхронизации")
+    void shouldLoadRestrictedUsersOnSync() throws Exception {
+        ResultSet row = mock(ResultSet.class);
+        when(row.getLong("id")).thenReturn(7L);
+        when(row.getLong("token_version")).thenReturn(3L);
+        when(row.getBoolean("enabled")).thenReturn(false);
+        doAnswer(invocation -> {
+            invocation.<RowCallbackHandler>getArgument(1).processRow(row);
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class));
+
+        registry.sync();
+
+        assertThat(registry.isRevoked(7L, 3)).isTrue();
+        assertThat(registry.isRevoked(8L, 0)).isFalse();
+    }
+}
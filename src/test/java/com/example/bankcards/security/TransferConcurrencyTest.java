@@ -0,0 +1,233 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.dto.mappers.TransactionMapper;
+import com.example.bankcards.dto.transactions.TransferRequest;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.enums.TransactionStatus;
+import com.example.bankcards.repositories.CardRepository;
+import com.example.bankcards.repositories.TransactionRepo;
+import com.example.bankcards.service.LedgerService;
+import com.example.bankcards.service.TransactionService;
+import com.example.bankcards.util.AuthenticatedUserUtil;
+import com.example.bankcards.util.EncryptionUtil;
+import com.example.bankcards.util.IdempotencyCache;
+import com.example.bankcards.util.TransactionRetryTemplate;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.when;
+
+@DataJpaTest(properties = {
+        "spring.liquibase.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.datasource.url=jdbc:h2:mem:transfers;LOCK_TIMEOUT=10000",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "logging.file.name=",
+        "logging.level.root=INFO",
+        "logging.level.com.example.bankcards=WARN",
+        "app.transfer.mode=locking",
+        "app.transfer.retry.max-attempts=50",
+        "app.transfer.retry.backoff-millis=1",
+        "app.transfer.retry.max-backoff-millis=20"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({TransactionService.class, LedgerService.class, TransactionMapper.class, TransactionRetryTemplate.class,
+        TransferConcurrencyTest.AuditingConfig.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@DisplayName("Тесты параллельных переводов между картами")
+class TransferConcurrencyTest {
+    private static final int CARDS = 4;
+    private static final int THREADS = 16;
+    private static final int TRANSFERS_PER_THREAD = 25;
+    private static final BigDecimal INITIAL_BALANCE = new BigDecimal("1000.00");
+
+    @MockBean
+    private AuthenticatedUserUtil userUtil;
+
+    @MockBean
+    private EncryptionUtil encryptionUtil;
+
+    @MockBean
+    private IdempotencyCache idempotencyCache;
+
+    @MockBean
+    private Validator validator;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private TransactionRepo transactionRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final List<Long> cardIds = new ArrayList<>();
+
+    @TestConfiguration
+    @EnableJpaAuditing
+    static class AuditingConfig {
+    }
+
+    @BeforeEach
+    void setUp() {
+        transactionTemplate.executeWithoutResult(status -> {
+            Role role = Role.builder().name("USER").build();
+            entityManager.persist(role);
+            User owner = User.builder()
+                    .phoneNumber("+79990000000")
+                    .password("secret")
+                    .firstName("Иван")
+                    .middleName("Иванович")
+                    .lastName("Иванов")
+                    .role(role)
+                    .createdAt(Instant.now())
+                    .build();
+            entityManager.persist(owner);
+            when(userUtil.getCurrentUserId()).thenReturn(owner.getId());
+
+            for (int i = 0; i < CARDS; i++) {
+                Card card = new Card()
+                        .setCardNumber("40001234567890" + i)
+                        .setOwner(owner)
+                        .setExpiryDate(LocalDate.now().plusYears(3))
+                        .setStatus("ACTIVE")
+                        .setBalance(INITIAL_BALANCE);
+                entityManager.persist(card);
+                cardIds.add(card.getId());
+            }
+        });
+    }
+
+    @Test
+    @DisplayName("Должен сохранять сумму балансов при встречных переводах из многих потоков")
+    void shouldConserveBalancesUnderContention() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                    int from = random.nextInt(CARDS);
+                    int to = (from + 1 + random.nextInt(CARDS - 1)) % CARDS;
+                    TransferRequest request = new TransferRequest();
+                    request.setFromCardId(cardIds.get(from));
+                    request.setToCardId(cardIds.get(to));
+                    request.setAmount(new BigDecimal(random.nextInt(1, 50)));
+                    try {
+                        transactionService.transferBetweenUserCards(request);
+                        succeeded.incrementAndGet();
+                    } catch (RuntimeException e) {
+                        assertThat(e.getMessage()).contains("Недостаточно средств");
+                        failed.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(2, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+
+        List<Card> cards = cardRepository.findAllById(cardIds);
+        BigDecimal total = cards.stream().map(Card::getBalance).reduce(BigDecimal.ZERO, BigDecimal::add);
+        assertThat(total).isEqualByComparingTo(INITIAL_BALANCE.multiply(BigDecimal.valueOf(CARDS)));
+        assertThat(cards).allSatisfy(card -> assertThat(card.getBalance()).isNotNegative());
+        List<Transaction> transactions = transactionRepository.findAll().stream()
+                .filter(transaction -> cardIds.contains(transaction.getFromCard().getId()))
+                .toList();
+        assertThat(transactions)
+                .filteredOn(transaction -> TransactionStatus.SUCCESS.name().equals(transaction.getStatus()))
+                .hasSize(succeeded.get());
+        assertThat(transactions)
+                .filteredOn(transaction -> TransactionStatus.FAILED.name().equals(transaction.getStatus()))
+                .hasSize(failed.get());
+        assertThat(cards).allSatisfy(card -> assertThat(jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(amount), 0) FROM ledger_postings WHERE card_id = ?", BigDecimal.class, card.getId()))
+                .isEqualByComparingTo(card.getBalance().subtract(INITIAL_BALANCE)));
+    }
+
+    @Test
+    @DisplayName("Должен отклонять перевод с карты, заблокированной после валидации")
+    void shouldRejectTransferFromCardBlockedAfterValidation() {
+        jdbcTemplate.update("UPDATE cards SET status = 'BLOCKED' WHERE id = ?", cardIds.get(0));
+        TransferRequest request = new TransferRequest();
+        request.setFromCardId(cardIds.get(0));
+        request.setToCardId(cardIds.get(1));
+        request.setAmount(new BigDecimal("10.00"));
+
+        assertThatThrownBy(() -> transactionService.transferBetweenUserCards(request))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Карта отправителя заблокирована");
+        assertThat(cardRepository.findAllById(cardIds.subList(0, 2)))
+                .allSatisfy(card -> assertThat(card.getBalance()).isEqualByComparingTo(INITIAL_BALANCE));
+    }
+
+    @Test
+    @DisplayName("Должен отклонять перевод с карты другого владельца, даже если валидация её пропустила")
+    void shouldRejectTransferFromCardOfAnotherOwner() {
+        when(userUtil.getCurrentUserId()).thenReturn(-1L);
+        TransferRequest request = new TransferRequest();
+        request.setFromCardId(cardIds.get(0));
+        request.setToCardId(cardIds.get(1));
+        request.setAmount(new BigDecimal("10.00"));
+
+        assertThatThrownBy(() -> transactionService.transferBetweenUserCards(request))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Карта отправителя не принадлежит пользователю");
+        assertThat(cardRepository.findAllById(cardIds.subList(0, 2)))
+                .allSatisfy(card -> assertThat(card.getBalance()).isEqualByComparingTo(INITIAL_BALANCE));
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.entity.User;
+import com.example.bankcards.util.UserCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Тесты кэша пользователей")
+class UserCacheTest {
+    private static final String PHONE = "+996555123456";
+
+    private SimpleMeterRegistry meterRegistry;
+    private UserCache userCache;
+    private AtomicInteger loads;
+    private Function<String, Optional<User>> loader;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        userCache = new UserCache(meterRegistry, 100, Duration.ofMinutes(5));
+        loads = new AtomicInteger();
+        loader = phone -> {
+            loads.incrementAndGet();
+            return Optional.of(User.builder().id(1L).phoneNumber(phone).build());
+        };
+    }
+
+    @Test
+    @DisplayName("Должен загружать пользователя из БД один раз")
+    void shouldLoadOnce() {
+        userCache.getByPhone(PHONE, loader);
+        userCache.getByPhone(PHONE, loader);
+
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "users").tag("result", "hit")
+                .functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Должен сбрасывать пользователя по событию изменения доступа")
+    void shouldEvictOnAccessChange() {
+        userCache.getByPhone(PHONE, loader);
+
+        userCache.onUserAccessChanged(new UserAccessChangedEvent(1L, 1, false, false));
+        userCache.getByPhone(PHONE, loader);
+
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Не должен кэшировать отсутствующих пользователей")
+    void shouldNotCacheMissingUsers() {
+        userCache.getByPhone(PHONE, phone -> {
+            loads.incrementAndGet();
+            return Optional.empty();
+        });
+
+        assertThat(userCache.getByPhone(PHONE, loader)).isPresent();
+        assertThat(loads.get()).isEqualTo(2);
+    }
+}
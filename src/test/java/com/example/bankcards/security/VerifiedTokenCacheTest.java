@@ -0,0 +1,76 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.util.JwtUtil;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@DisplayName("Тесты кэша проверенных токенов")
+class VerifiedTokenCacheTest {
+    private static final String SECRET =
+            "YbSS/0YQOmauYLHwkyqhQaM0fuGexnIFni3tNG3bpLSSCykNUcART4vHTJWNNdxMTDdOo5R0y+b3gbaxKSlHkQ==";
+
+    private JwtUtil jwtUtil;
+    private VerifiedTokenCache tokenCache;
+
+    @BeforeEach
+    void setUp() {
+        jwtUtil = Mockito.spy(new JwtUtil(SECRET));
+        tokenCache = new VerifiedTokenCache(jwtUtil, new SimpleMeterRegistry(), 100);
+    }
+
+    @Test
+    @DisplayName("Должен проверять подпись токена только при первом обращении")
+    void shouldVerifyTokenOnce() {
+        String token = token("+996555123456", System.currentTimeMillis() + 60_000);
+
+        Claims first = tokenCache.parse(token);
+        Claims second = tokenCache.parse(token);
+
+        assertThat(second.getSubject()).isEqualTo("+996555123456");
+        assertThat(second).isSameAs(first);
+        verify(jwtUtil, times(1)).parseToken(anyString());
+    }
+
+    @Test
+    @DisplayName("Не должен кэшировать токен с неверной подписью")
+    void shouldNotCacheInvalidToken() {
+        String token = token("+996555123456", System.currentTimeMillis() + 60_000);
+        String forged = token.substring(0, token.length() - 2) + (token.endsWith("AA") ? "BB" : "AA");
+
+        assertThatThrownBy(() -> tokenCache.parse(forged)).isInstanceOf(JwtException.class);
+        assertThatThrownBy(() -> tokenCache.parse(forged)).isInstanceOf(JwtException.class);
+        verify(jwtUtil, times(2)).parseToken(anyString());
+    }
+
+    @Test
+    @DisplayName("Должен отклонять истёкший токен")
+    void shouldRejectExpiredToken() {
+        String token = token("+996555123456", System.currentTimeMillis() - 1_000);
+
+        assertThatThrownBy(() -> tokenCache.parse(token)).isInstanceOf(JwtException.class);
+    }
+
+    private static String token(String subject, long expiresAt) {
+        return Jwts.builder()
+                .subject(subject)
+                .expiration(new Date(expiresAt))
+                .signWith(Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET)))
+                .compact();
+    }
+}